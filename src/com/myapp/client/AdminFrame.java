@@ -14,6 +14,7 @@ import java.awt.event.WindowStateListener;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.lang.reflect.Method;
 import java.text.SimpleDateFormat;
 
@@ -49,7 +50,7 @@ public class AdminFrame extends JFrame {
     
     // User management components
     private JTable userTable;
-    private DefaultTableModel tableModel;
+    private UserTableModel tableModel;
     private JTextField globalSearchField;
     // Update-panel filters
     private JTextField updateSearchField;
@@ -59,12 +60,10 @@ public class AdminFrame extends JFrame {
     private JComboBox<String> roleFilter;
     private JButton createUserBtn, editUserBtn, deleteUserBtn, refreshBtn;
     
-    // Pagination variables
+    // Pagination variables: only server-side queries are paged, local lists scroll as a whole
     private int userTablePage = 1;
-    private int updateUsersPage = 1;
-    private final int USERS_PER_PAGE = 10;
+    private final int USERS_PER_PAGE = 100; // the server's ADMIN_QUERY_USERS maximum
     private int totalUserPages = 1;
-    private int totalUpdateUserPages = 1;
     // Modern action cell renderer with primary action and dropdown menu
     private class ActionCellRenderer extends JPanel implements TableCellRenderer {
         private JButton primaryBtn;
@@ -132,16 +131,19 @@ public class AdminFrame extends JFrame {
     private JLabel statusLabel;
     private JProgressBar progressBar;
     
-    // Data storage
-    private List<User> users = new ArrayList<>();
-    private List<User> filteredUsers = new ArrayList<>();
-    private Map<String, Boolean> onlineUsers = new ConcurrentHashMap<>();
+    // Data storage: one user list shared by every panel, which listen to it for changes.
+    // The frame is never serialized, so fields of non-serializable types are not marked transient
+    @SuppressWarnings("serial") private final UserStore userStore = new UserStore();
+    private List<User> filteredUsers = new ArrayList<>();   // user table, all rows matching the filter (or the server page)
+    @SuppressWarnings("serial") private List<User> updatePanelUsers = new ArrayList<>(); // update panel, all rows matching its filter
     // Audit cache / summary (kept in memory for quick access if needed)
     private volatile int recentAuditCount = 0;
     private volatile String recentAuditSummary = "";
-    // Activity log pagination
+    // Activity log pagination: [i] is where page i + 1 starts in each log
     private int activityLogPage = 1;
     private final int ACTIVITY_LOGS_PER_PAGE = 30;
+    @SuppressWarnings("serial") private final List<ActivityLogPosition> activityLogStarts = new ArrayList<>();
+    private int activityLogSeq = 0;
     
     // Navigation buttons map for styling
     private Map<String, JButton> navButtons = new HashMap<>();
@@ -155,11 +157,43 @@ public class AdminFrame extends JFrame {
     // Heartbeat timer
     private javax.swing.Timer heartbeatTimer;
     
+    // Presence changes pushed by the server; polling is only the fallback for older servers
+    @SuppressWarnings("serial") private final java.util.function.Consumer<Response> presenceListener = this::onPresenceEvent;
+    private volatile boolean presenceSubscribed = false;
+    
+    // Server watermark of the last user list load, for delta sync
+    private volatile String usersWatermark;
+    
+    // Server-side paging of the user table (ADMIN_QUERY_USERS); null = not yet known
+    private Boolean serverQuerySupported = null;
+    private boolean serverPaging = false;
+    @SuppressWarnings("serial") private final List<String> userPageCursors = new ArrayList<>(); // [i] opens page i + 2
+    private String lastUserQueryKey;
+    private int userQuerySeq = 0;
+    
+    // Local search: an index over the store, rebuilt off the EDT whenever users change, and
+    // queries answered off the EDT once typing pauses. Only the newest query updates a table.
+    private static final int SEARCH_DEBOUNCE_MS = 150;
+    @SuppressWarnings("serial") private volatile UserSearchIndex searchIndex;
+    private boolean searchIndexBuilding = false;
+    private boolean searchIndexStale = false;
+    private int localSearchSeq = 0;
+    private int updateSearchSeq = 0;
+    private final javax.swing.Timer searchDebounce = debounce(this::filterUsers);
+    private final javax.swing.Timer updateSearchDebounce = debounce(this::filterUpdateUsers);
+    
     public AdminFrame(User user, NetworkClient client) {
         this.currentUser = user;
         this.networkClient = client;
         
         initializeUI();
+        // Panels follow the shared store instead of reloading on their own
+        userStore.addListener(change -> {
+            if (change.fieldsChanged()) rebuildSearchIndex();
+        });
+        userStore.addListener(change -> updateDashboardKPIs());
+        userStore.addListener(this::onUserTableChange);
+        userStore.addListener(this::onUpdateTableChange);
         loadUsers();
         startHeartbeat();
     }
@@ -233,8 +267,15 @@ public class AdminFrame extends JFrame {
 
     // Circular avatar label class
     private static class CircularAvatarLabel extends JLabel {
+        private final boolean circularIcons; // icons come pre-masked, so no clip is needed
+
         public CircularAvatarLabel() {
+            this(false);
+        }
+
+        public CircularAvatarLabel(boolean circularIcons) {
             super();
+            this.circularIcons = circularIcons;
             setOpaque(false);
         }
 
@@ -259,8 +300,9 @@ public class AdminFrame extends JFrame {
                 int height = getHeight();
                 
                 // Create smooth circular clip
-                Ellipse2D.Float circle = new Ellipse2D.Float(0.5f, 0.5f, width - 1, height - 1);
-                g2.setClip(circle);
+                if (!circularIcons) {
+                    g2.setClip(new Ellipse2D.Float(0.5f, 0.5f, width - 1, height - 1));
+                }
                 
                 // Calculate position to center the icon
                 int iconWidth = icon.getIconWidth();
@@ -825,108 +867,30 @@ public class AdminFrame extends JFrame {
         SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
             @Override
             protected Void doInBackground() throws Exception {
-                // First load users data
+                // Users and recent audit logs (to show edits / cập nhật) share one round trip
                 Request request = new Request("ADMIN_LIST_USERS");
                 request.put("requestedBy", currentUser.getUsername());
                 
-                Response response = networkClient.send(request);
+                List<Response> answers = networkClient.sendBatch(Arrays.asList(request, new Request("GET_AUDITS")));
+                summarizeRecentAudits(answers.get(1));
+                Response response = answers.get(0);
                 if (response != null && response.isSuccess()) {
-                    String usersStr = response.getData().get("users");
-                    if (usersStr != null && !usersStr.trim().isEmpty()) {
-                        List<User> tempUsers = new ArrayList<>();
-                        String[] userEntries = usersStr.split(";");
-                        for (String entry : userEntries) {
-                            if (!entry.trim().isEmpty()) {
-                                String[] parts = entry.split(",", -1);
-                                if (parts.length >= 10) {
-                                    User user = new User();
-                                    try {
-                                        user.setId(Integer.parseInt(parts[0]));
-                                        user.setUsername(parts[1]);
-                                        user.setFullName(parts[2]);
-                                        user.setEmail(parts[3]);
-                                        user.setAvatar(parts[4]);
-                                        user.setRole(parts[5]);
-                                        user.setStatus(parts[6]);
-
-                                        String onlineStatus = parts[7];
-                                        String lastLogin = parts[8];
-                                        String createdAt = parts[9];
-
-                                        user.setLastLogin(lastLogin != null && !lastLogin.trim().isEmpty() ? lastLogin : "Chưa đăng nhập");
-                                        user.setCreatedAt(createdAt != null ? createdAt : "");
-
-                                        onlineUsers.put(user.getUsername(), "ONLINE".equalsIgnoreCase(onlineStatus));
-                                        tempUsers.add(user);
-                                    } catch (NumberFormatException e) {
-                                        System.err.println("Error parsing user data: " + entry);
-                                    }
-                                }
+                    List<User> tempUsers = userStore.applyRows(response.getData().get("users"), true);
+                    // Show recent activity from users data
+                    SwingUtilities.invokeLater(() -> {
+                        for (User user : tempUsers) {
+                            boolean isOnline = userStore.isOnline(user.getId());
+                            String timeInfo = "";
+                            if (!isOnline && user.getLastLogin() != null && !"Chưa đăng nhập".equals(user.getLastLogin())) {
+                                timeInfo = " - " + formatLastLoginTime(user.getLastLogin());
                             }
-                        }
-                        
-                                // Show recent activity from users data
-                                SwingUtilities.invokeLater(() -> {
-                                    for (User user : tempUsers) {
-                                        boolean isOnline = onlineUsers.getOrDefault(user.getUsername(), false);
-                                        String timeInfo = "";
-                                        if (!isOnline && user.getLastLogin() != null && !"Chưa đăng nhập".equals(user.getLastLogin())) {
-                                            timeInfo = " - " + formatLastLoginTime(user.getLastLogin());
-                                        }
-
-                                        // Use UserChip component for activity entry
-                                        UserChip chip = new UserChip(user.getFullName(), user.getUsername(), user.getAvatar(), isOnline, timeInfo);
-                                        activityList.add(chip);
-                                        activityList.add(Box.createRigidArea(new Dimension(0, 4)));
-                                    }
 
-                                    // After user-based items, also fetch recent audit logs (to show edits / cập nhật)
-                                    SwingWorker<Void, Void> auditWorker = new SwingWorker<Void, Void>() {
-                                        @Override
-                                        protected Void doInBackground() throws Exception {
-                                            try {
-                                                Request auditReq = new Request("GET_AUDITS");
-                                                Response auditResp = networkClient.send(auditReq);
-                                                if (auditResp != null && auditResp.isSuccess()) {
-                                                    String auditsData = auditResp.getData().get("audits");
-                                                    if (auditsData != null && !auditsData.trim().isEmpty()) {
-                                                        String[] records = auditsData.split("\n");
-                                                        // Compute a small summary and keep it in memory; do NOT update UI here
-                                                        int count = 0;
-                                                        StringBuilder sb = new StringBuilder();
-                                                        for (int i = Math.max(0, records.length - 20); i < records.length; i++) {
-                                                            String rec = records[i];
-                                                            if (rec == null || rec.trim().isEmpty()) continue;
-                                                            String[] p = rec.split("\\|", -1);
-                                                            if (p.length >= 5) {
-                                                                String username = p[1] != null ? p[1] : "";
-                                                                String action = p[2] != null ? p[2] : "";
-                                                                String createdAt = p[4] != null ? p[4] : "";
-                                                                count++;
-                                                                if (sb.length() > 0) sb.append("; ");
-                                                                sb.append(username).append(":").append(translateActivity(action.toUpperCase()));
-                                                            }
-                                                        }
-                                                        recentAuditCount = count;
-                                                        recentAuditSummary = sb.toString();
-                                                        // optional: log for debugging
-                                                        System.out.println("GET_AUDITS summary: count=" + recentAuditCount + " sample=" + (recentAuditSummary.length() > 120 ? recentAuditSummary.substring(0, 120) + "..." : recentAuditSummary));
-                                                    } else {
-                                                        recentAuditCount = 0;
-                                                        recentAuditSummary = "";
-                                                    }
-                                                }
-                                            } catch (Exception e) {
-                                                // keep summaries empty on error
-                                                recentAuditCount = 0;
-                                                recentAuditSummary = "";
-                                            }
-                                            return null;
-                                        }
-                                    };
-                                    auditWorker.execute();
-                                });
-                    }
+                            // Use UserChip component for activity entry
+                            UserChip chip = new UserChip(user.getFullName(), user.getUsername(), user.getAvatar(), isOnline, timeInfo);
+                            activityList.add(chip);
+                            activityList.add(Box.createRigidArea(new Dimension(0, 4)));
+                        }
+                    });
                 }
                 return null;
             }
@@ -953,6 +917,41 @@ public class AdminFrame extends JFrame {
         worker.execute();
     }
     
+    // Compute a small summary and keep it in memory; do NOT update UI here
+    private void summarizeRecentAudits(Response auditResp) {
+        if (auditResp == null || !auditResp.isSuccess()) {
+            // keep summaries empty on error
+            recentAuditCount = 0;
+            recentAuditSummary = "";
+            return;
+        }
+        String auditsData = auditResp.getData().get("audits");
+        if (auditsData != null && !auditsData.trim().isEmpty()) {
+            String[] records = auditsData.split("\n");
+            int count = 0;
+            StringBuilder sb = new StringBuilder();
+            for (int i = Math.max(0, records.length - 20); i < records.length; i++) {
+                String rec = records[i];
+                if (rec == null || rec.trim().isEmpty()) continue;
+                String[] p = rec.split("\\|", -1);
+                if (p.length >= 5) {
+                    String username = p[1] != null ? p[1] : "";
+                    String action = p[2] != null ? p[2] : "";
+                    count++;
+                    if (sb.length() > 0) sb.append("; ");
+                    sb.append(username).append(":").append(translateActivity(action.toUpperCase()));
+                }
+            }
+            recentAuditCount = count;
+            recentAuditSummary = sb.toString();
+            // optional: log for debugging
+            System.out.println("GET_AUDITS summary: count=" + recentAuditCount + " sample=" + (recentAuditSummary.length() > 120 ? recentAuditSummary.substring(0, 120) + "..." : recentAuditSummary));
+        } else {
+            recentAuditCount = 0;
+            recentAuditSummary = "";
+        }
+    }
+    
     private void addActivityItem(JPanel parent, String activity, String status) {
         // kept for compatibility but no longer used; add simple fallback rendering
         JPanel item = new JPanel(new BorderLayout());
@@ -993,222 +992,249 @@ public class AdminFrame extends JFrame {
         // Create custom pie chart
         PieChartPanel pieChart = new PieChartPanel();
         
-        // Load chart data
+        // Load chart data, then follow role/status changes in the store
         loadStatusDistributionData(pieChart);
+        userStore.addListener(change -> {
+            if (change.fieldsChanged()) showStatusDistribution(pieChart);
+        });
         
         return pieChart;
     }
     
     private void loadStatusDistributionData(PieChartPanel pieChart) {
-        SwingWorker<Map<String, Integer>, Void> worker = new SwingWorker<Map<String, Integer>, Void>() {
+        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
             @Override
-            protected Map<String, Integer> doInBackground() throws Exception {
-                Map<String, Integer> statusCounts = new HashMap<>();
-                
+            protected Void doInBackground() throws Exception {
                 // Get users data
                 Request request = new Request("ADMIN_LIST_USERS");
                 request.put("requestedBy", currentUser.getUsername());
                 
                 Response response = networkClient.send(request);
                 if (response != null && response.isSuccess()) {
-                    String usersStr = response.getData().get("users");
-                    if (usersStr != null && !usersStr.trim().isEmpty()) {
-                        String[] userEntries = usersStr.split(";");
-                        for (String entry : userEntries) {
-                            if (!entry.trim().isEmpty()) {
-                                String[] parts = entry.split(",", -1);
-                                if (parts.length >= 7) { // Ensure we have role and status
-                                    String role = parts[5]; // Role is at index 5
-                                    String status = parts[6]; // Status is at index 6
-                                    
-                                    // Combine role and status for categorization
-                                    String key = role.toLowerCase() + "_" + status.toLowerCase();
-                                    statusCounts.put(key, statusCounts.getOrDefault(key, 0) + 1);
-                                }
-                            }
-                        }
-                    }
+                    userStore.applyRows(response.getData().get("users"), true);
                 }
-                
-                return statusCounts;
+                return null;
             }
             
             @Override
             protected void done() {
-                try {
-                    Map<String, Integer> statusCounts = get();
-                    Map<String, Color> statusColors = new HashMap<>();
-                    // Define colors for the 4 categories
-                    statusColors.put("admin_active", new Color(46, 204, 113)); // Green for admin active
-                    statusColors.put("user_active", new Color(52, 152, 219)); // Blue for user active
-                    statusColors.put("admin_locked", new Color(231, 76, 60)); // Red for admin locked
-                    statusColors.put("user_locked", new Color(155, 89, 182)); // Purple for user locked
-                    
-                    pieChart.setData(statusCounts, statusColors);
-                    pieChart.repaint();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+                showStatusDistribution(pieChart);
             }
         };
         worker.execute();
     }
+    
+    private void showStatusDistribution(PieChartPanel pieChart) {
+        Map<String, Integer> statusCounts = new HashMap<>();
+        for (User user : userStore.snapshot()) {
+            if (user.getRole() == null || user.getStatus() == null) continue;
+            // Combine role and status for categorization
+            String key = user.getRole().toLowerCase() + "_" + user.getStatus().toLowerCase();
+            statusCounts.put(key, statusCounts.getOrDefault(key, 0) + 1);
+        }
+        
+        Map<String, Color> statusColors = new HashMap<>();
+        // Define colors for the 4 categories
+        statusColors.put("admin_active", new Color(46, 204, 113)); // Green for admin active
+        statusColors.put("user_active", new Color(52, 152, 219)); // Blue for user active
+        statusColors.put("admin_locked", new Color(231, 76, 60)); // Red for admin locked
+        statusColors.put("user_locked", new Color(155, 89, 182)); // Purple for user locked
+        
+        pieChart.setData(statusCounts, statusColors);
+        pieChart.repaint();
+    }
 
     
+    // Refresh and opening the panel start again from the newest rows
     private void loadActivityLogs() {
-        // Find the log panel and its table model
-        Component[] components = mainContentPanel.getComponents();
+        activityLogPage = 1;
+        activityLogStarts.clear();
+        activityLogStarts.add(new ActivityLogPosition(Collections.emptyList(), null, Collections.emptyList(), null));
+        showActivityLogPage();
+    }
+    
+    /*
+     * The page merges audit_logs and login_attempts, newest first. Each log is read in keyset
+     * pages of ACTIVITY_LOGS_PER_PAGE; rows read but not shown yet wait in the position the
+     * next page starts from, so a page costs at most one bounded request per log.
+     */
+    private void showActivityLogPage() {
         DefaultTableModel logTableModel = null;
-        
-        for (Component comp : components) {
+        for (Component comp : mainContentPanel.getComponents()) {
             if (comp instanceof JPanel) {
-                JPanel panel = (JPanel) comp;
-                Object tableModel = panel.getClientProperty("tableModel");
+                Object tableModel = ((JPanel) comp).getClientProperty("tableModel");
                 if (tableModel instanceof DefaultTableModel) {
                     logTableModel = (DefaultTableModel) tableModel;
                     break;
                 }
             }
         }
-        
         if (logTableModel == null) return;
-
+        
         final DefaultTableModel finalLogTableModel = logTableModel;
-
-        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+        final int seq = ++activityLogSeq;
+        final int page = activityLogPage;
+        final ActivityLogPosition start = activityLogStarts.get(page - 1);
+        
+        SwingWorker<List<Object[]>, Void> worker = new SwingWorker<List<Object[]>, Void>() {
+            private ActivityLogPosition next;
+            
             @Override
-            protected Void doInBackground() throws Exception {
-                // We'll collect all rows first in memory, then update the model on EDT
-                List<Object[]> allRows = new ArrayList<>();
-
-                // Get audit logs from server
-                Request request = new Request("GET_AUDITS");
-                Response response = networkClient.send(request);
-
-                if (response != null && response.isSuccess()) {
-                    String auditsData = response.getData().get("audits");
-                    if (auditsData != null && !auditsData.trim().isEmpty()) {
-                        String[] auditRecords = auditsData.split("\n");
-
-                        for (String record : auditRecords) {
-                            if (!record.trim().isEmpty()) {
-                                String[] parts = record.split("\\|", -1);
-                                if (parts.length >= 5) {
-                                    // Server format for audits: id | username | action | details | createdAt
-                                    String createdAt = parts[4] != null ? parts[4] : "";
-                                    String username = parts[1] != null ? parts[1] : "System";
-                                    String action = parts[2] != null ? parts[2] : "";
-                                    String details = parts[3] != null ? parts[3] : "";
-
-                                    String actionVi = action;
-                                    if ("LOGIN_SUCCESS".equalsIgnoreCase(action) || action.toLowerCase().contains("login_success") || action.toLowerCase().contains("đăng nhập thành công")) {
-                                        actionVi = "Đăng nhập thành công";
-                                    } else if ("LOGIN_FAILED".equalsIgnoreCase(action) || action.toLowerCase().contains("login_failed") || action.toLowerCase().contains("đăng nhập thất bại")) {
-                                        actionVi = "Đăng nhập thất bại";
-                                    } else if ("LOGOUT".equalsIgnoreCase(action) || action.toLowerCase().contains("logout") || action.toLowerCase().contains("đăng xuất")) {
-                                        actionVi = "Đăng xuất";
-                                    } else if ("PROFILE_UPDATE".equalsIgnoreCase(action) || action.toLowerCase().contains("profile_update") || action.toLowerCase().contains("cập nhật")) {
-                                        actionVi = "Cập nhật thông tin";
-                                    } else if ("PASSWORD_CHANGE".equalsIgnoreCase(action) || action.toLowerCase().contains("password_change") || action.toLowerCase().contains("đổi mật khẩu")) {
-                                        actionVi = "Đổi mật khẩu";
-                                    }
-
-                                    Object[] row = new Object[] { createdAt, username, actionVi, details };
-                                    allRows.add(row);
-                                }
-                            }
-                        }
-                    }
+            protected List<Object[]> doInBackground() throws Exception {
+                // Both requests go out before either answer is awaited
+                java.util.concurrent.CompletableFuture<Response> auditPage =
+                        fetchLogPage("GET_AUDITS", start.audits, start.auditCursor);
+                java.util.concurrent.CompletableFuture<Response> loginPage =
+                        fetchLogPage("GET_ALL_LOGIN_LOGS", start.logins, start.loginCursor);
+                
+                List<Object[]> audits = new ArrayList<>(start.audits);
+                String auditCursor = start.auditCursor;
+                if (auditPage != null) {
+                    Response r = auditPage.get();
+                    auditCursor = nextLogCursor(r);
+                    if (r != null && r.isSuccess()) parseAuditRows(r.getData().get("audits"), audits::add);
                 }
-
-                // Get login attempts
-                Request loginLogsRequest = new Request("GET_ALL_LOGIN_LOGS");
-                Response loginLogsResponse = networkClient.send(loginLogsRequest);
-
-                if (loginLogsResponse != null && loginLogsResponse.isSuccess()) {
-                    String loginLogsData = loginLogsResponse.getData().get("loginLogs");
-                    if (loginLogsData != null && !loginLogsData.trim().isEmpty()) {
-                        String[] loginRecords = loginLogsData.split("\n");
-
-                        for (String record : loginRecords) {
-                            if (!record.trim().isEmpty()) {
-                                String[] parts = record.split("\\|", -1);
-                                // Expected: LOGIN_ATTEMPT|time|username|description|ip|result
-                                if (parts.length >= 6 && "LOGIN_ATTEMPT".equalsIgnoreCase(parts[0])) {
-                                    String time = parts[1] != null ? parts[1] : "";
-                                    String uname = parts[2] != null ? parts[2] : "";
-                                    String desc = parts[3] != null ? parts[3] : "";
-                                    String actionVi = "Đăng nhập";
-                                    if (desc != null && desc.toLowerCase().contains("thất bại")) actionVi = "Đăng nhập thất bại";
-                                    else if (desc != null && desc.toLowerCase().contains("thành công")) actionVi = "Đăng nhập thành công";
-
-                                    Object[] row = new Object[] { time, uname, actionVi, desc };
-                                    allRows.add(row);
-                                }
-                            }
-                        }
-                    }
+                List<Object[]> logins = new ArrayList<>(start.logins);
+                String loginCursor = start.loginCursor;
+                if (loginPage != null) {
+                    Response r = loginPage.get();
+                    loginCursor = nextLogCursor(r);
+                    if (r != null && r.isSuccess()) parseLoginLogRows(r.getData().get("loginLogs"), logins::add);
                 }
-
-                // Sort rows newest-first: assume DB timestamps are ISO-like so lexicographic works; otherwise parse
-                allRows.sort((a, b) -> {
-                    String ta = a[0] != null ? a[0].toString() : "";
-                    String tb = b[0] != null ? b[0].toString() : "";
-                    // descending
-                    return tb.compareTo(ta);
-                });
-
-                final List<Object[]> rowsToShow = new ArrayList<>();
-                int total = allRows.size();
-                int pages = Math.max(1, (int) Math.ceil((double) total / ACTIVITY_LOGS_PER_PAGE));
-                if (activityLogPage < 1) activityLogPage = 1;
-                if (activityLogPage > pages) activityLogPage = pages;
-
-                int start = (activityLogPage - 1) * ACTIVITY_LOGS_PER_PAGE;
-                int end = Math.min(total, start + ACTIVITY_LOGS_PER_PAGE);
-
-                for (int i = start; i < end; i++) rowsToShow.add(allRows.get(i));
-
-                final int currentPage = activityLogPage;
-                final int totalPages = pages;
-
-                SwingUtilities.invokeLater(() -> {
-                    finalLogTableModel.setRowCount(0);
-                    for (Object[] r : rowsToShow) {
-                        finalLogTableModel.addRow(r);
-                    }
-
-                    // Update page label and prev/next enable state if available
-                    Component[] comps = mainContentPanel.getComponents();
-                    for (Component comp : comps) {
-                        if (comp instanceof JPanel) {
-                            JPanel p = (JPanel) comp;
-                            Object pm = p.getClientProperty("pageLabel");
-                            if (pm instanceof JLabel) {
-                                JLabel pl = (JLabel) pm;
-                                pl.setText("Trang " + currentPage + " / " + totalPages);
-                            }
-
-                            Object prev = p.getClientProperty("prevPageBtn");
-                            if (prev instanceof JButton) ((JButton) prev).setEnabled(currentPage > 1);
-                            Object next = p.getClientProperty("nextPageBtn");
-                            if (next instanceof JButton) ((JButton) next).setEnabled(currentPage < totalPages);
-                        }
-                    }
-                });
-
-                return null;
+                
+                // Both lists are newest first; take the page off their heads
+                List<Object[]> rows = new ArrayList<>(ACTIVITY_LOGS_PER_PAGE);
+                int ia = 0, il = 0;
+                while (rows.size() < ACTIVITY_LOGS_PER_PAGE && (ia < audits.size() || il < logins.size())) {
+                    boolean auditNext = il >= logins.size()
+                            || (ia < audits.size() && logTime(audits.get(ia)).compareTo(logTime(logins.get(il))) >= 0);
+                    rows.add(auditNext ? audits.get(ia++) : logins.get(il++));
+                }
+                next = new ActivityLogPosition(audits.subList(ia, audits.size()), auditCursor,
+                        logins.subList(il, logins.size()), loginCursor);
+                return rows;
             }
-
+            
             @Override
             protected void done() {
-                // no-op
+                if (seq != activityLogSeq) return; // a newer page was asked for
+                List<Object[]> rows;
+                try {
+                    rows = get();
+                } catch (Exception e) {
+                    System.err.println("Activity log error: " + e.getMessage());
+                    return;
+                }
+                finalLogTableModel.setRowCount(0);
+                for (Object[] r : rows) {
+                    finalLogTableModel.addRow(r);
+                }
+                while (activityLogStarts.size() > page) activityLogStarts.remove(activityLogStarts.size() - 1);
+                activityLogStarts.add(next);
+                
+                // Update page label and prev/next enable state if available
+                for (Component comp : mainContentPanel.getComponents()) {
+                    if (comp instanceof JPanel) {
+                        JPanel p = (JPanel) comp;
+                        Object pm = p.getClientProperty("pageLabel");
+                        if (pm instanceof JLabel) ((JLabel) pm).setText("Trang " + page);
+                        Object prev = p.getClientProperty("prevPageBtn");
+                        if (prev instanceof JButton) ((JButton) prev).setEnabled(page > 1);
+                        Object nextBtn = p.getClientProperty("nextPageBtn");
+                        if (nextBtn instanceof JButton) ((JButton) nextBtn).setEnabled(next.hasMore());
+                    }
+                }
             }
         };
-
         worker.execute();
     }
     
+    // Next keyset page of one log, or null when the rows already read fill a page or the log is exhausted
+    private java.util.concurrent.CompletableFuture<Response> fetchLogPage(String action, List<Object[]> buffered, String cursor) {
+        if (buffered.size() >= ACTIVITY_LOGS_PER_PAGE || "".equals(cursor)) return null;
+        Request request = new Request(action);
+        request.put("pageSize", String.valueOf(ACTIVITY_LOGS_PER_PAGE));
+        if (cursor != null) request.put("cursor", cursor);
+        return networkClient.sendAsync(request);
+    }
+    
+    // "" once nothing follows; a server without paging sends everything and no cursor
+    private static String nextLogCursor(Response response) {
+        if (response == null || !response.isSuccess()) return "";
+        String cursor = response.getData().get("nextCursor");
+        return cursor != null ? cursor : "";
+    }
+    
+    private static String logTime(Object[] row) {
+        return row[0] != null ? row[0].toString() : "";
+    }
+    
+    /** Where an activity log page starts in each log: rows read but not shown, then the server cursor. */
+    private static final class ActivityLogPosition {
+        final List<Object[]> audits;
+        final String auditCursor; // null = from the newest row, "" = nothing left on the server
+        final List<Object[]> logins;
+        final String loginCursor;
+        
+        ActivityLogPosition(List<Object[]> audits, String auditCursor, List<Object[]> logins, String loginCursor) {
+            this.audits = new ArrayList<>(audits);
+            this.auditCursor = auditCursor;
+            this.logins = new ArrayList<>(logins);
+            this.loginCursor = loginCursor;
+        }
+        
+        boolean hasMore() {
+            return !audits.isEmpty() || !logins.isEmpty() || !"".equals(auditCursor) || !"".equals(loginCursor);
+        }
+    }
+    
+    // Server format for audits: id | username | action | details | createdAt
+    private void parseAuditRows(String auditsData, Consumer<Object[]> sink) {
+        if (auditsData == null || auditsData.trim().isEmpty()) return;
+        for (String record : auditsData.split("\n")) {
+            if (record.trim().isEmpty()) continue;
+            String[] parts = record.split("\\|", -1);
+            if (parts.length < 5) continue;
+            String createdAt = parts[4] != null ? parts[4] : "";
+            String username = parts[1] != null ? parts[1] : "System";
+            String action = parts[2] != null ? parts[2] : "";
+            String details = parts[3] != null ? parts[3] : "";
+
+            String actionVi = action;
+            if ("LOGIN_SUCCESS".equalsIgnoreCase(action) || action.toLowerCase().contains("login_success") || action.toLowerCase().contains("đăng nhập thành công")) {
+                actionVi = "Đăng nhập thành công";
+            } else if ("LOGIN_FAILED".equalsIgnoreCase(action) || action.toLowerCase().contains("login_failed") || action.toLowerCase().contains("đăng nhập thất bại")) {
+                actionVi = "Đăng nhập thất bại";
+            } else if ("LOGOUT".equalsIgnoreCase(action) || action.toLowerCase().contains("logout") || action.toLowerCase().contains("đăng xuất")) {
+                actionVi = "Đăng xuất";
+            } else if ("PROFILE_UPDATE".equalsIgnoreCase(action) || action.toLowerCase().contains("profile_update") || action.toLowerCase().contains("cập nhật")) {
+                actionVi = "Cập nhật thông tin";
+            } else if ("PASSWORD_CHANGE".equalsIgnoreCase(action) || action.toLowerCase().contains("password_change") || action.toLowerCase().contains("đổi mật khẩu")) {
+                actionVi = "Đổi mật khẩu";
+            }
+
+            sink.accept(new Object[] { createdAt, username, actionVi, details });
+        }
+    }
+
+    // Expected: LOGIN_ATTEMPT|time|username|description|ip|result
+    private void parseLoginLogRows(String loginLogsData, Consumer<Object[]> sink) {
+        if (loginLogsData == null || loginLogsData.trim().isEmpty()) return;
+        for (String record : loginLogsData.split("\n")) {
+            if (record.trim().isEmpty()) continue;
+            String[] parts = record.split("\\|", -1);
+            if (parts.length < 6 || !"LOGIN_ATTEMPT".equalsIgnoreCase(parts[0])) continue;
+            String time = parts[1] != null ? parts[1] : "";
+            String uname = parts[2] != null ? parts[2] : "";
+            String desc = parts[3] != null ? parts[3] : "";
+            String actionVi = "Đăng nhập";
+            if (desc.toLowerCase().contains("thất bại")) actionVi = "Đăng nhập thất bại";
+            else if (desc.toLowerCase().contains("thành công")) actionVi = "Đăng nhập thành công";
+
+            sink.accept(new Object[] { time, uname, actionVi, desc });
+        }
+    }
+
     private void createUserManagementPanel() {
         // This will be implemented to wrap the existing table functionality
     }
@@ -1636,7 +1662,7 @@ public class AdminFrame extends JFrame {
         prevPageBtn.addActionListener(e -> {
             if (activityLogPage > 1) {
                 activityLogPage--;
-                loadActivityLogs();
+                showActivityLogPage();
             }
         });
 
@@ -1648,8 +1674,10 @@ public class AdminFrame extends JFrame {
         nextPageBtn.setPreferredSize(new Dimension(90, 36));
         nextPageBtn.setFocusPainted(false);
         nextPageBtn.addActionListener(e -> {
-            activityLogPage++;
-            loadActivityLogs();
+            if (activityLogPage < activityLogStarts.size()) {
+                activityLogPage++;
+                showActivityLogPage();
+            }
         });
         
         // Log table
@@ -1912,7 +1940,7 @@ public class AdminFrame extends JFrame {
         // Pagination section positioned above the status bar
         JPanel bottomContainer = new JPanel(new BorderLayout());
         bottomContainer.setOpaque(false);
-        bottomContainer.add(createPaginationSection(false), BorderLayout.NORTH);
+        bottomContainer.add(createPaginationSection(), BorderLayout.NORTH);
         
         // Status panel with modern styling
         JPanel statusPanel = new JPanel(new BorderLayout());
@@ -1985,9 +2013,9 @@ public class AdminFrame extends JFrame {
         globalSearchField.setForeground(new Color(156, 163, 175));
         globalSearchField.setOpaque(false);
         globalSearchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
-            public void changedUpdate(javax.swing.event.DocumentEvent e) { filterUsers(); }
-            public void removeUpdate(javax.swing.event.DocumentEvent e) { filterUsers(); }
-            public void insertUpdate(javax.swing.event.DocumentEvent e) { filterUsers(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { searchDebounce.restart(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { searchDebounce.restart(); }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { searchDebounce.restart(); }
         });
         
         // Add placeholder effect
@@ -2132,7 +2160,6 @@ public class AdminFrame extends JFrame {
         
         JPanel bottomContainer = new JPanel(new BorderLayout());
         bottomContainer.setOpaque(false);
-        bottomContainer.add(createPaginationSection(true), BorderLayout.NORTH);
 
         // Status panel with modern styling - same as main
         JPanel statusPanel = new JPanel(new BorderLayout());
@@ -2205,9 +2232,9 @@ public class AdminFrame extends JFrame {
         updateSearchField.setForeground(new Color(156, 163, 175));
         updateSearchField.setOpaque(false);
         updateSearchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
-            public void changedUpdate(javax.swing.event.DocumentEvent e) { filterUpdateUsers(); }
-            public void removeUpdate(javax.swing.event.DocumentEvent e) { filterUpdateUsers(); }
-            public void insertUpdate(javax.swing.event.DocumentEvent e) { filterUpdateUsers(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { updateSearchDebounce.restart(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { updateSearchDebounce.restart(); }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { updateSearchDebounce.restart(); }
         });
         
         // Add placeholder effect
@@ -2297,12 +2324,7 @@ public class AdminFrame extends JFrame {
             "ID", "Avatar", "Tài khoản", "Email", "Vai trò", "Trạng thái", "Online", "Ngày tạo", "Thao tác"
         };
         
-        DefaultTableModel updateTableModel = new DefaultTableModel(modernColumnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 8; // Only action column is editable
-            }
-        };
+        UserTableModel updateTableModel = new UserTableModel(modernColumnNames);
         
         JTable updateUserTable = new JTable(updateTableModel);
         
@@ -2371,6 +2393,8 @@ public class AdminFrame extends JFrame {
         scrollPane.getViewport().setBackground(Color.WHITE);
         scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+        // Wheel scrolls by pixels rather than whole 58px rows
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
         
         tablePanel.add(scrollPane, BorderLayout.CENTER);
         
@@ -2391,40 +2415,7 @@ public class AdminFrame extends JFrame {
                 
                 Response response = networkClient.send(request);
                 if (response != null && response.isSuccess()) {
-                    String usersStr = response.getData().get("users");
-                    if (usersStr != null && !usersStr.trim().isEmpty()) {
-                        users.clear();
-                        String[] userEntries = usersStr.split(";");
-                        for (String entry : userEntries) {
-                            if (!entry.trim().isEmpty()) {
-                                String[] parts = entry.split(",", -1);
-                                if (parts.length >= 10) {
-                                    User user = new User();
-                                    try {
-                                        user.setId(Integer.parseInt(parts[0]));
-                                        user.setUsername(parts[1]);
-                                        user.setFullName(parts[2]);
-                                        user.setEmail(parts[3]);
-                                        user.setAvatar(parts[4]);
-                                        user.setRole(parts[5]);
-                                        user.setStatus(parts[6]);
-
-                                        String onlineStatus = parts[7];
-                                        String lastLogin = parts[8];
-                                        String createdAt = parts[9];
-
-                                        user.setLastLogin(lastLogin != null && !lastLogin.trim().isEmpty() ? lastLogin : "Chưa đăng nhập");
-                                        user.setCreatedAt(createdAt != null ? createdAt : "");
-
-                                        onlineUsers.put(user.getUsername(), "ONLINE".equalsIgnoreCase(onlineStatus));
-                                        users.add(user);
-                                    } catch (NumberFormatException e) {
-                                        System.err.println("Error parsing user data: " + entry);
-                                    }
-                                }
-                            }
-                        }
-                    }
+                    userStore.applyRows(response.getData().get("users"), true);
                 }
                 return null;
             }
@@ -2471,74 +2462,11 @@ public class AdminFrame extends JFrame {
         return null;
     }
     
-    private void updateUpdateTableData(DefaultTableModel model, List<User> users) {
-        model.setRowCount(0);
-        
-        // Calculate pagination
-        int totalFilteredUsers = users.size();
-        totalUpdateUserPages = (int) Math.ceil((double) totalFilteredUsers / USERS_PER_PAGE);
-        if (totalUpdateUserPages == 0) totalUpdateUserPages = 1;
-        if (updateUsersPage > totalUpdateUserPages) updateUsersPage = totalUpdateUserPages;
-        if (updateUsersPage < 1) updateUsersPage = 1;
-        
-        // Get users for current page
-        int startIndex = (updateUsersPage - 1) * USERS_PER_PAGE;
-        int endIndex = Math.min(startIndex + USERS_PER_PAGE, totalFilteredUsers);
-        
-        for (int i = startIndex; i < endIndex; i++) {
-            User user = users.get(i);
-            Object[] row = new Object[9];
-            row[0] = user.getId();
-
-            row[1] = user.getAvatar() != null ? user.getAvatar() : "";
-
-            String displayName = user.getFullName() != null ? user.getFullName().trim() : "";
-            row[2] = new UserDisplayInfo(
-                user.getUsername() != null ? user.getUsername() : "",
-                displayName
-            );
-
-            row[3] = user.getEmail() != null ? user.getEmail() : "";
-
-            row[4] = new StatusChip(
-                UIUtils.mapRoleToVietnamese(user.getRole()),
-                "ADMIN".equalsIgnoreCase(user.getRole()) ? StatusChip.Type.INFO : StatusChip.Type.SECONDARY
-            );
-
-            String vietnameseStatus = UIUtils.mapStatusToVietnamese(user.getStatus());
-            StatusChip.Type statusType = "HOẠT ĐỘNG".equalsIgnoreCase(vietnameseStatus)
-                ? StatusChip.Type.SUCCESS
-                : StatusChip.Type.DANGER;
-            row[5] = new StatusChip(vietnameseStatus, statusType);
-
-            boolean isOnline = onlineUsers.getOrDefault(user.getUsername(), false);
-            row[6] = new OnlineStatus(
-                isOnline,
-                isOnline ? "TRỰC TUYẾN" : "NGOẠI TUYẾN",
-                formatLastLoginTime(user.getLastLogin())
-            );
-
-            // Use the raw createdAt value from the database (it's already formatted there)
-            row[7] = user.getCreatedAt() != null ? user.getCreatedAt() : "N/A";
-
-            row[8] = user;
-
-            model.addRow(row);
-        }
-        
-        updateUpdatePaginationControls();
-    }
-    
-    private void updateUpdatePaginationControls() {
-        // Update update users pagination controls
-        Component[] components = getContentPane().getComponents();
-        for (Component comp : components) {
-            if (comp instanceof JPanel) {
-                updatePaginationInPanel((JPanel) comp, updateUsersPage, totalUpdateUserPages, "updateUsers");
-            }
-        }
+    private void updateUpdateTableData(UserTableModel model, List<User> users) {
+        // All matching users in one scrolling table; rows are built as they come into view
+        model.setUsers(users);
     }
-    private JPanel createPaginationSection(boolean forUpdatePanel) {
+    private JPanel createPaginationSection() {
         JPanel container = new JPanel(new BorderLayout());
         container.setBackground(new Color(249, 250, 251));
         container.setBorder(BorderFactory.createCompoundBorder(
@@ -2548,31 +2476,22 @@ public class AdminFrame extends JFrame {
 
         JPanel controls = new JPanel(new FlowLayout(FlowLayout.CENTER, 8, 0));
         controls.setOpaque(false);
-        controls.putClientProperty("paginationType", forUpdatePanel ? "updateUsers" : "userTable");
+        controls.putClientProperty("paginationType", "userTable");
 
         JButton prevBtn = new JButton("‹ Trước");
         prevBtn.setFont(new Font("Segoe UI", Font.PLAIN, 13));
         prevBtn.setPreferredSize(new Dimension(80, 36));
         prevBtn.setFocusPainted(false);
-        prevBtn.setEnabled(forUpdatePanel ? updateUsersPage > 1 : userTablePage > 1);
+        prevBtn.setEnabled(userTablePage > 1);
         prevBtn.addActionListener(e -> {
-            if (forUpdatePanel) {
-                if (updateUsersPage > 1) {
-                    updateUsersPage--;
-                    loadUpdateUsersData();
-                }
-            } else {
-                if (userTablePage > 1) {
-                    userTablePage--;
-                    loadUsers();
-                }
+            if (userTablePage > 1) {
+                userTablePage--;
+                if (serverPaging) queryUserPage(); else loadUsers();
             }
         });
         controls.add(prevBtn);
 
-        int currentPage = forUpdatePanel ? updateUsersPage : userTablePage;
-        int totalPages = forUpdatePanel ? totalUpdateUserPages : totalUserPages;
-        JLabel pageLabel = new JLabel("Trang " + currentPage + " / " + totalPages);
+        JLabel pageLabel = new JLabel("Trang " + userTablePage + " / " + totalUserPages);
         pageLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
         pageLabel.setHorizontalAlignment(SwingConstants.CENTER);
         controls.add(pageLabel);
@@ -2581,18 +2500,11 @@ public class AdminFrame extends JFrame {
         nextBtn.setFont(new Font("Segoe UI", Font.PLAIN, 13));
         nextBtn.setPreferredSize(new Dimension(80, 36));
         nextBtn.setFocusPainted(false);
-        nextBtn.setEnabled(forUpdatePanel ? updateUsersPage < totalUpdateUserPages : userTablePage < totalUserPages);
+        nextBtn.setEnabled(userTablePage < totalUserPages);
         nextBtn.addActionListener(e -> {
-            if (forUpdatePanel) {
-                if (updateUsersPage < totalUpdateUserPages) {
-                    updateUsersPage++;
-                    loadUpdateUsersData();
-                }
-            } else {
-                if (userTablePage < totalUserPages) {
-                    userTablePage++;
-                    loadUsers();
-                }
+            if (userTablePage < totalUserPages) {
+                userTablePage++;
+                if (serverPaging) queryUserPage(); else loadUsers();
             }
         });
         controls.add(nextBtn);
@@ -2610,12 +2522,7 @@ public class AdminFrame extends JFrame {
             "ID", "Avatar", "Tài khoản", "Email", "Vai trò", "Trạng thái", "Online", "Ngày tạo", "Thao tác"
         };
         
-        tableModel = new DefaultTableModel(modernColumnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 8; // Only action column is editable
-            }
-        };
+        tableModel = new UserTableModel(modernColumnNames);
         
         userTable = new JTable(tableModel);
         
@@ -2685,6 +2592,8 @@ public class AdminFrame extends JFrame {
         scrollPane.getViewport().setBackground(Color.WHITE);
         scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+        // Wheel scrolls by pixels rather than whole 58px rows
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
         
         tablePanel.add(scrollPane, BorderLayout.CENTER);
         
@@ -2700,61 +2609,24 @@ public class AdminFrame extends JFrame {
     }
     
     private void loadUsers() {
-        SwingWorker<List<User>, Void> worker = new SwingWorker<List<User>, Void>() {
+        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
             @Override
-            protected List<User> doInBackground() throws Exception {
+            protected Void doInBackground() throws Exception {
                 setStatusAndProgress("Đang tải danh sách người dùng...", true);
                 
-                Request request = new Request("ADMIN_LIST_USERS");
-                request.put("requestedBy", currentUser.getUsername());
-                
-                Response response = networkClient.send(request);
-                if (response != null && response.isSuccess()) {
-                    List<User> userList = new ArrayList<>();
-                    String usersData = response.getData().get("users");
-                    
-                    if (usersData != null && !usersData.trim().isEmpty()) {
-                        String[] userRecords = usersData.split(";");
-                        for (String record : userRecords) {
-                            if (!record.trim().isEmpty()) {
-                                String[] parts = record.split(",", -1); // Keep empty strings
-                                if (parts.length >= 10) { // Minimum required fields
-                                    User user = new User();
-                                    user.setId(Integer.parseInt(parts[0]));
-                                    user.setUsername(parts[1]);
-                                    user.setFullName(parts[2]);
-                                    user.setEmail(parts[3]);
-                                    user.setAvatar(parts[4]);
-                                    user.setRole(parts[5]);
-                                    user.setStatus(parts[6]);
-
-                                    String onlineStatus = parts[7];
-                                    String lastLogin = parts[8];
-                                    String createdAt = parts[9];
-
-                                    user.setLastLogin(lastLogin != null && !lastLogin.trim().isEmpty() ? lastLogin : "Chưa đăng nhập");
-                                    user.setCreatedAt(createdAt != null ? createdAt : "");
-
-                                    onlineUsers.put(user.getUsername(), "ONLINE".equalsIgnoreCase(onlineStatus));
-                                    userList.add(user);
-                                }
-                            }
-                        }
-                    }
-                    return userList;
+                if (!fetchUserList(usersWatermark)) {
+                    // Delta could not be applied (e.g. rows deleted): fall back to a full load
+                    fetchUserList(null);
                 }
-                return new ArrayList<>();
+                return null;
             }
             
             @Override
             protected void done() {
                 try {
-                    users = get();
-                    // Cập nhật trạng thái online ngay sau khi load users
-                    updateOnlineStatus();
-                    // Cập nhật dashboard KPIs
-                    updateDashboardKPIs();
-                    setStatusAndProgress("Đã tải " + users.size() + " người dùng", false);
+                    get();
+                    // Panels pick the changes up from the store
+                    setStatusAndProgress("Đã tải " + userStore.size() + " người dùng", false);
                 } catch (Exception e) {
                     e.printStackTrace();
                     JOptionPane.showMessageDialog(AdminFrame.this, 
@@ -2767,151 +2639,411 @@ public class AdminFrame extends JFrame {
         worker.execute();
     }
     
+    /**
+     * Loads the user list into the store. With a watermark only users changed since then
+     * are transferred and merged. Returns false when the merged list does not match the
+     * server's user count, so a full load is needed.
+     */
+    private boolean fetchUserList(String since) throws Exception {
+        Request request = new Request("ADMIN_LIST_USERS");
+        request.put("requestedBy", currentUser.getUsername());
+        if (since != null) {
+            request.put("since", since);
+        }
+        
+        Response response = networkClient.send(request);
+        if (response == null || !response.isSuccess()) {
+            usersWatermark = null;
+            return since == null;
+        }
+        
+        boolean delta = "true".equals(response.getData().get("delta"));
+        userStore.applyRows(response.getData().get("users"), !delta);
+        
+        if (delta) {
+            try {
+                if (userStore.size() != Integer.parseInt(response.getData().get("total"))) {
+                    usersWatermark = null;
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                usersWatermark = null;
+                return false;
+            }
+            String onlineIds = response.getData().get("onlineUserIds");
+            // Pushed presence is newer than the snapshot taken with this answer
+            if (onlineIds != null && !presenceSubscribed) {
+                userStore.setOnlineSnapshot(parseUserIds(onlineIds));
+            }
+        }
+        
+        usersWatermark = response.getData().get("watermark");
+        return true;
+    }
+    
     private void filterUsers() {
-        String searchText = globalSearchField.getText().toLowerCase().trim();
+        String searchText = globalSearchField.getText().trim();
         // Handle placeholder text
-        if ("tìm theo tên, email, id".equals(searchText)) {
+        if ("tìm theo tên, email, id".equalsIgnoreCase(searchText)) {
             searchText = "";
         }
+        String key = searchText + "\u0001" + statusFilter.getSelectedItem() + "\u0001" + roleFilter.getSelectedItem();
+        if (!key.equals(lastUserQueryKey)) {
+            // New criteria: back to the first page
+            lastUserQueryKey = key;
+            userTablePage = 1;
+            userPageCursors.clear();
+        }
         
-        String statusFilter = (String) this.statusFilter.getSelectedItem();
-        String roleFilter = (String) this.roleFilter.getSelectedItem();
-        
-        filteredUsers.clear();
+        // Text is searched in the local index (any part of a name or email, accents ignored);
+        // the server only pages the unsearched list through the status and role filters
+        if (!searchText.isEmpty() || Boolean.FALSE.equals(serverQuerySupported)) {
+            userQuerySeq++; // a page still in flight must not replace the matches
+            serverPaging = false;
+            filterUsersLocally();
+        } else {
+            queryUserPage();
+        }
+    }
+    
+    // Asks the server for the current page only; older servers fall back to local filtering
+    private void queryUserPage() {
+        final int seq = ++userQuerySeq;
+        localSearchSeq++; // nor may a local search still running replace the page
+        final int page = userTablePage;
+        final String status = statusDbValue((String) statusFilter.getSelectedItem());
+        final String role = roleDbValue((String) roleFilter.getSelectedItem());
+        final String cursor = page > 1 && page - 2 < userPageCursors.size() ? userPageCursors.get(page - 2) : null;
         
-        for (User user : users) {
-            String fullName = user.getFullName() != null ? user.getFullName() : "";
-            String email = user.getEmail() != null ? user.getEmail() : "";
-            String username = user.getUsername() != null ? user.getUsername() : "";
+        SwingWorker<List<User>, Void> worker = new SwingWorker<List<User>, Void>() {
+            private int total = -1; // only the first page carries it
+            private String nextCursor;
+            private boolean unsupported;
             
-            boolean matchSearch = searchText.isEmpty() || 
-                username.toLowerCase().contains(searchText) ||
-                fullName.toLowerCase().contains(searchText) ||
-                email.toLowerCase().contains(searchText) ||
-                String.valueOf(user.getId()).contains(searchText);
+            @Override
+            protected List<User> doInBackground() throws Exception {
+                Request request = new Request("ADMIN_QUERY_USERS");
+                if (status != null) request.put("status", status);
+                if (role != null) request.put("role", role);
+                if (cursor != null) request.put("cursor", cursor);
+                request.put("sort", "id");
+                request.put("pageSize", String.valueOf(USERS_PER_PAGE));
+                
+                Response response = networkClient.send(request);
+                if (response == null) return null;
+                if (!response.isSuccess()) {
+                    // Only an older server lacks the action; anything else may pass
+                    String message = response.getMessage();
+                    unsupported = message != null && message.startsWith("Unknown action");
+                    return null;
+                }
+                String count = response.getData().get("total");
+                if (count != null && !count.isEmpty()) total = Integer.parseInt(count);
+                nextCursor = response.getData().get("nextCursor");
+                return userStore.applyRows(response.getData().get("users"), false);
+            }
             
-            boolean matchStatus = "Tất cả trạng thái".equals(statusFilter) || 
-                UIUtils.mapStatusToVietnamese(user.getStatus()).equals(statusFilter);
+            @Override
+            protected void done() {
+                if (seq != userQuerySeq) return; // a newer query is in flight
+                List<User> pageUsers = null;
+                try {
+                    pageUsers = get();
+                } catch (Exception e) {
+                    System.err.println("User query error: " + e.getMessage());
+                }
+                if (pageUsers == null) {
+                    // Filter what the client has this time; the next query asks the server again
+                    if (unsupported) serverQuerySupported = false;
+                    serverPaging = false;
+                    filterUsersLocally();
+                    return;
+                }
+                serverQuerySupported = true;
+                serverPaging = true;
+                filteredUsers.clear();
+                filteredUsers.addAll(pageUsers);
+                if (total >= 0) {
+                    totalUserPages = Math.max(1, (int) Math.ceil((double) total / USERS_PER_PAGE));
+                } else if (nextCursor == null || nextCursor.isEmpty()) {
+                    totalUserPages = page; // no count after page 1, but nothing follows this page
+                }
+                // Cursor that opens the page after this one
+                while (userPageCursors.size() < page) userPageCursors.add(null);
+                userPageCursors.set(page - 1, nextCursor != null && !nextCursor.isEmpty() ? nextCursor : null);
+                updateTableData();
+            }
+        };
+        worker.execute();
+    }
+    
+    private String statusDbValue(String label) {
+        for (String status : new String[]{"ACTIVE", "LOCKED", "INACTIVE"}) {
+            if (UIUtils.mapStatusToVietnamese(status).equals(label)) return status;
+        }
+        return null;
+    }
+    
+    private String roleDbValue(String label) {
+        for (String role : new String[]{"USER", "ADMIN"}) {
+            if (UIUtils.mapRoleToVietnamese(role).equals(label)) return role;
+        }
+        return null;
+    }
+    
+    private void filterUsersLocally() {
+        final int seq = ++localSearchSeq;
+        final String searchText = searchQuery(globalSearchField);
+        final String statusFilter = (String) this.statusFilter.getSelectedItem();
+        final String roleFilter = (String) this.roleFilter.getSelectedItem();
+        final UserSearchIndex index = searchIndex;
+        
+        SwingWorker<List<User>, Void> worker = new SwingWorker<List<User>, Void>() {
+            @Override
+            protected List<User> doInBackground() {
+                return searchUsers(index, searchText, statusFilter, roleFilter);
+            }
             
-            boolean matchRole = "Tất cả vai trò".equals(roleFilter) || 
-                UIUtils.mapRoleToVietnamese(user.getRole()).equals(roleFilter);
+            @Override
+            protected void done() {
+                if (seq != localSearchSeq) return; // a newer search is in flight
+                try {
+                    List<User> results = get();
+                    filteredUsers.clear();
+                    filteredUsers.addAll(results);
+                    updateTableData();
+                } catch (Exception e) {
+                    System.err.println("User search error: " + e.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+    
+    // Users matching a folded query and the two combo filters, in id order; runs off the EDT
+    private List<User> searchUsers(UserSearchIndex index, String query, String statusFilter, String roleFilter) {
+        List<User> results = new ArrayList<>();
+        if (query.isEmpty() || index == null) {
+            for (User user : userStore.snapshot()) {
+                if (matchesFilter(user, query, statusFilter, roleFilter)) results.add(user);
+            }
+            return results;
+        }
+        for (int id : index.search(query)) {
+            // The index may predate the user's latest change, so the current user is checked again
+            User user = userStore.get(id);
+            if (user != null && matchesFilter(user, query, statusFilter, roleFilter)) results.add(user);
+        }
+        return results;
+    }
+    
+    // Folded text of a search box, "" while it shows its placeholder
+    private String searchQuery(JTextField field) {
+        String text = field.getText() != null ? field.getText().trim() : "";
+        if ("tìm theo tên, email, id".equalsIgnoreCase(text)) return "";
+        return UserSearchIndex.fold(text);
+    }
+    
+    private static javax.swing.Timer debounce(Runnable action) {
+        javax.swing.Timer timer = new javax.swing.Timer(SEARCH_DEBOUNCE_MS, e -> action.run());
+        timer.setRepeats(false);
+        return timer;
+    }
+    
+    private void rebuildSearchIndex() {
+        if (searchIndexBuilding) {
+            // Picked up as soon as the running build ends
+            searchIndexStale = true;
+            return;
+        }
+        searchIndexBuilding = true;
+        searchIndexStale = false;
+        SwingWorker<UserSearchIndex, Void> worker = new SwingWorker<UserSearchIndex, Void>() {
+            @Override
+            protected UserSearchIndex doInBackground() {
+                return UserSearchIndex.build(userStore.snapshot());
+            }
             
-            if (matchSearch && matchStatus && matchRole) {
-                filteredUsers.add(user);
+            @Override
+            protected void done() {
+                searchIndexBuilding = false;
+                try {
+                    searchIndex = get();
+                } catch (Exception e) {
+                    System.err.println("Search index error: " + e.getMessage());
+                }
+                if (searchIndexStale) {
+                    rebuildSearchIndex();
+                    return;
+                }
+                // Searches answered by the previous index may have missed changed users
+                if (!searchQuery(globalSearchField).isEmpty()) {
+                    filterUsersLocally();
+                }
+                if (updateSearchField != null && !searchQuery(updateSearchField).isEmpty()) {
+                    filterUpdateUsers();
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private JTable findUpdateTable() {
+        for (Component comp : mainContentPanel.getComponents()) {
+            if (comp instanceof JPanel && "UPDATE_USERS".equals(((JPanel) comp).getClientProperty("panelName"))) {
+                return findTableInContainer((JPanel) comp);
             }
         }
+        return null;
+    }
+
+    // Search (already folded) over username, full name, email and id, plus the status and role combo values
+    private boolean matchesFilter(User user, String searchText, String statusFilter, String roleFilter) {
+        boolean matchSearch = UserSearchIndex.matches(user, searchText);
+        
+        boolean matchStatus = "Tất cả trạng thái".equals(statusFilter) || 
+            UIUtils.mapStatusToVietnamese(user.getStatus()).equals(statusFilter);
         
-        updateTableData();
+        boolean matchRole = "Tất cả vai trò".equals(roleFilter) || 
+            UIUtils.mapRoleToVietnamese(user.getRole()).equals(roleFilter);
+        
+        return matchSearch && matchStatus && matchRole;
     }
 
     // Filtering logic for the Update Users panel (separate controls)
     private void filterUpdateUsers() {
         if (updateSearchField == null || updateRoleFilter == null || updateStatusFilter == null) return;
 
-        String searchText = updateSearchField.getText() != null ? updateSearchField.getText().toLowerCase().trim() : "";
-        if ("tìm theo tên, email, id".equals(searchText)) searchText = "";
-
-        String role = (String) updateRoleFilter.getSelectedItem();
-        String status = (String) updateStatusFilter.getSelectedItem();
-
-        List<User> results = new ArrayList<>();
-        for (User user : users) {
-            String fullName = user.getFullName() != null ? user.getFullName() : "";
-            String email = user.getEmail() != null ? user.getEmail() : "";
-            String username = user.getUsername() != null ? user.getUsername() : "";
-
-            boolean matchSearch = searchText.isEmpty() || username.toLowerCase().contains(searchText)
-                || fullName.toLowerCase().contains(searchText)
-                || email.toLowerCase().contains(searchText)
-                || String.valueOf(user.getId()).contains(searchText);
+        final int seq = ++updateSearchSeq;
+        final String searchText = searchQuery(updateSearchField);
+        final String role = (String) updateRoleFilter.getSelectedItem();
+        final String status = (String) updateStatusFilter.getSelectedItem();
+        final UserSearchIndex index = searchIndex;
 
-            boolean matchRole = "Tất cả vai trò".equals(role) || UIUtils.mapRoleToVietnamese(user.getRole()).equals(role);
-            boolean matchStatus = "Tất cả trạng thái".equals(status) || UIUtils.mapStatusToVietnamese(user.getStatus()).equals(status);
+        SwingWorker<List<User>, Void> worker = new SwingWorker<List<User>, Void>() {
+            @Override
+            protected List<User> doInBackground() {
+                return searchUsers(index, searchText, status, role);
+            }
 
-            if (matchSearch && matchRole && matchStatus) results.add(user);
-        }
+            @Override
+            protected void done() {
+                if (seq != updateSearchSeq) return; // a newer search is in flight
+                try {
+                    updatePanelUsers = get();
+                } catch (Exception e) {
+                    System.err.println("User search error: " + e.getMessage());
+                    return;
+                }
+                // Find update table and update its model
+                JTable updateTable = findUpdateTable();
+                if (updateTable != null && updateTable.getModel() instanceof UserTableModel) {
+                    updateUpdateTableData((UserTableModel) updateTable.getModel(), updatePanelUsers);
+                }
+            }
+        };
+        worker.execute();
+    }
+    
+    // Cell values of one user row, shared by the user table and the update panel
+    private Object[] userRow(User user) {
+        Object[] row = new Object[9];
+        row[0] = user.getId();
+
+        // Avatar URL for dedicated avatar column
+        row[1] = user.getAvatar() != null ? user.getAvatar() : "";
+
+        // Account info: username (top) + @fullname (bottom)
+        String displayName = user.getFullName() != null ? user.getFullName().trim() : "";
+        row[2] = new UserDisplayInfo(
+            user.getUsername() != null ? user.getUsername() : "",
+            displayName
+        );
+
+        // Email column
+        row[3] = user.getEmail() != null ? user.getEmail() : "";
+
+        // Role with chip styling
+        row[4] = new StatusChip(
+            UIUtils.mapRoleToVietnamese(user.getRole()),
+            "ADMIN".equalsIgnoreCase(user.getRole()) ? StatusChip.Type.INFO : StatusChip.Type.SECONDARY
+        );
+
+        // Status with chip styling
+        String vietnameseStatus = UIUtils.mapStatusToVietnamese(user.getStatus());
+        StatusChip.Type statusType = "HOẠT ĐỘNG".equalsIgnoreCase(vietnameseStatus)
+            ? StatusChip.Type.SUCCESS
+            : StatusChip.Type.DANGER;
+        row[5] = new StatusChip(vietnameseStatus, statusType);
+
+        // Online status with dot indicator
+        boolean isOnline = userStore.isOnline(user.getId());
+        row[6] = new OnlineStatus(
+            isOnline,
+            isOnline ? "TRỰC TUYẾN" : "NGOẠI TUYẾN",
+            user.getLastLogin()
+        );
+
+        // Use the raw createdAt value from the database (it's already formatted there)
+        row[7] = user.getCreatedAt() != null ? user.getCreatedAt() : "N/A";
+
+        // Action - will be rendered with buttons
+        row[8] = user; // Pass user object for actions
+        return row;
+    }
 
-        // Find update table and update its model
-        Component[] components = mainContentPanel.getComponents();
-        for (Component comp : components) {
-            if (comp instanceof JPanel) {
-                JPanel panel = (JPanel) comp;
-                Object name = panel.getClientProperty("panelName");
-                if (name != null && "UPDATE_USERS".equals(name)) {
-                    JTable updateTable = findTableInContainer(panel);
-                    if (updateTable != null && updateTable.getModel() instanceof DefaultTableModel) {
-                        DefaultTableModel model = (DefaultTableModel) updateTable.getModel();
-                        updateUpdateTableData(model, results);
-                    }
+    // User table: changed rows are redrawn in place; the filter only re-runs when rows come or go
+    private void onUserTableChange(UserStore.Change change) {
+        boolean refilter = change.membershipChanged();
+        if (!refilter && !serverPaging && !change.updated.isEmpty()) {
+            String searchText = searchQuery(globalSearchField);
+            for (Integer id : change.updated) {
+                User user = userStore.get(id);
+                boolean shown = tableModel.rowOf(id) >= 0;
+                if (user != null && shown != matchesFilter(user, searchText,
+                        (String) statusFilter.getSelectedItem(), (String) roleFilter.getSelectedItem())) {
+                    refilter = true;
                     break;
                 }
             }
         }
+        if (refilter) {
+            filterUsers();
+            return;
+        }
+        refreshRows(tableModel, change);
     }
-    
-    private void updateTableData() {
-        tableModel.setRowCount(0);
-        
-        // Calculate pagination
-        int totalFilteredUsers = filteredUsers.size();
-        totalUserPages = (int) Math.ceil((double) totalFilteredUsers / USERS_PER_PAGE);
-        if (totalUserPages == 0) totalUserPages = 1;
-        if (userTablePage > totalUserPages) userTablePage = totalUserPages;
-        if (userTablePage < 1) userTablePage = 1;
-        
-        // Get users for current page
-        int startIndex = (userTablePage - 1) * USERS_PER_PAGE;
-        int endIndex = Math.min(startIndex + USERS_PER_PAGE, totalFilteredUsers);
-        
-        for (int i = startIndex; i < endIndex; i++) {
-            User user = filteredUsers.get(i);
-            Object[] row = new Object[9];
-            row[0] = user.getId();
-
-            // Avatar URL for dedicated avatar column
-            row[1] = user.getAvatar() != null ? user.getAvatar() : "";
-
-            // Account info: username (top) + @fullname (bottom)
-            String displayName = user.getFullName() != null ? user.getFullName().trim() : "";
-            row[2] = new UserDisplayInfo(
-                user.getUsername() != null ? user.getUsername() : "",
-                displayName
-            );
-
-            // Email column
-            row[3] = user.getEmail() != null ? user.getEmail() : "";
-
-            // Role with chip styling
-            row[4] = new StatusChip(
-                UIUtils.mapRoleToVietnamese(user.getRole()),
-                "ADMIN".equalsIgnoreCase(user.getRole()) ? StatusChip.Type.INFO : StatusChip.Type.SECONDARY
-            );
-
-            // Status with chip styling
-            String vietnameseStatus = UIUtils.mapStatusToVietnamese(user.getStatus());
-            StatusChip.Type statusType = "HOẠT ĐỘNG".equalsIgnoreCase(vietnameseStatus)
-                ? StatusChip.Type.SUCCESS
-                : StatusChip.Type.DANGER;
-            row[5] = new StatusChip(vietnameseStatus, statusType);
-
-            // Online status with dot indicator
-            boolean isOnline = onlineUsers.getOrDefault(user.getUsername(), false);
-            OnlineStatus onlineStatus = new OnlineStatus(
-                isOnline,
-        isOnline ? "TRỰC TUYẾN" : "NGOẠI TUYẾN",
-                formatLastLoginTime(user.getLastLogin())
-            );
-            row[6] = onlineStatus;
 
-            // Formatted created date
-            // Use DB value directly
-            row[7] = user.getCreatedAt() != null ? user.getCreatedAt() : "N/A";
+    // Update panel: filtered locally, so any change of fields just re-runs its filter
+    private void onUpdateTableChange(UserStore.Change change) {
+        if (change.fieldsChanged()) {
+            filterUpdateUsers();
+            return;
+        }
+        JTable updateTable = findUpdateTable();
+        if (updateTable != null && updateTable.getModel() instanceof UserTableModel) {
+            refreshRows((UserTableModel) updateTable.getModel(), change);
+        }
+    }
 
-            // Action - will be rendered with buttons
-            row[8] = user; // Pass user object for actions
+    // Redraws the rows whose user changed, taking the new user object from the store
+    private void refreshRows(UserTableModel model, UserStore.Change change) {
+        Set<Integer> ids = new HashSet<>(change.updated);
+        ids.addAll(change.presence);
+        for (Integer id : ids) {
+            User user = userStore.get(id);
+            if (user != null) model.userChanged(user);
+        }
+    }
 
-            tableModel.addRow(row);
+    private void updateTableData() {
+        if (!serverPaging) {
+            // Every match is in the table and the scroll pane takes the place of pages
+            userTablePage = 1;
+            totalUserPages = 1;
         }
+        // filteredUsers holds all matches, or just the current page when the server pages
+        tableModel.setUsers(filteredUsers);
         
         updateButtonStates();
         updatePaginationControls();
@@ -2973,7 +3105,7 @@ public class AdminFrame extends JFrame {
         int selectedRow = userTable.getSelectedRow();
         if (selectedRow < 0) return;
         
-        User selectedUser = filteredUsers.get(selectedRow);
+        User selectedUser = tableModel.getUserAt(selectedRow);
         UserEditDialog dialog = new UserEditDialog(this, "Sửa thông tin người dùng", selectedUser, networkClient);
         dialog.setVisible(true);
         
@@ -2986,7 +3118,7 @@ public class AdminFrame extends JFrame {
         int selectedRow = userTable.getSelectedRow();
         if (selectedRow < 0) return;
         
-        User selectedUser = filteredUsers.get(selectedRow);
+        User selectedUser = tableModel.getUserAt(selectedRow);
         
         int option = JOptionPane.showConfirmDialog(this,
             "Bạn có chắc chắn muốn khóa người dùng '" + selectedUser.getUsername() + "'?\n(Tính năng xóa hoàn toàn chưa được triển khai)",
@@ -3051,26 +3183,103 @@ public class AdminFrame extends JFrame {
     
     private void startHeartbeat() {
         heartbeatTimer = new javax.swing.Timer(30000, e -> {
-            updateOnlineStatus();
+            // Always ping: the server expires sessions and idle sockets that send nothing
+            sendHeartbeat();
+            if (!presenceSubscribed) {
+                updateOnlineStatus();
+            }
             updateDashboardKPIs();
+            // "n phút trước" moves on with the clock, not with the data
+            if (userTable != null) userTable.repaint();
         });
         heartbeatTimer.start();
         
         // Initial update
-        updateOnlineStatus();
+        subscribePresence();
         updateDashboardKPIs();
     }
     
+    private void sendHeartbeat() {
+        networkClient.sendAsync(new Request("PING")).whenComplete((response, error) ->
+            SwingUtilities.invokeLater(() -> {
+                // The server may have dropped the subscription (new connection, or this client fell
+                // behind); subscribing again brings a fresh snapshot
+                boolean subscribed = error == null && response != null
+                        && "true".equals(response.getData().get("presence"));
+                if (presenceSubscribed && !subscribed) {
+                    presenceSubscribed = false;
+                    userStore.setPresencePushed(false);
+                    subscribePresence();
+                }
+            }));
+    }
+    
+    private void subscribePresence() {
+        networkClient.removePushListener(presenceListener);
+        networkClient.addPushListener(presenceListener);
+        SwingWorker<java.util.Set<Integer>, Void> worker = new SwingWorker<java.util.Set<Integer>, Void>() {
+            @Override
+            protected java.util.Set<Integer> doInBackground() throws Exception {
+                Response response = networkClient.send(new Request("SUBSCRIBE_PRESENCE"));
+                if (response != null && response.isSuccess()) {
+                    return parseUserIds(response.getData().get("onlineUserIds"));
+                }
+                return null;
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    java.util.Set<Integer> snapshot = get();
+                    if (snapshot != null) {
+                        presenceSubscribed = true;
+                        userStore.setOnlineSnapshot(snapshot);
+                        userStore.setPresencePushed(true);
+                        return;
+                    }
+                } catch (Exception e) {
+                    System.err.println("Presence subscription error: " + e.getMessage());
+                }
+                // Server does not push presence: keep polling
+                networkClient.removePushListener(presenceListener);
+                updateOnlineStatus();
+            }
+        };
+        worker.execute();
+    }
+    
+    // Called on the network reader thread with the changes coalesced by the server
+    private void onPresenceEvent(Response event) {
+        if (!"PRESENCE".equals(event.getData().get("event"))) return;
+        java.util.Set<Integer> online = parseUserIds(event.getData().get("online"));
+        java.util.Set<Integer> offline = parseUserIds(event.getData().get("offline"));
+        // The store notifies the panels showing these users on the EDT
+        userStore.setOnline(online, offline);
+    }
+    
+    private java.util.Set<Integer> parseUserIds(String csv) {
+        java.util.Set<Integer> ids = new java.util.HashSet<>();
+        if (csv == null || csv.trim().isEmpty()) return ids;
+        for (String idStr : csv.split(",")) {
+            try {
+                ids.add(Integer.parseInt(idStr.trim()));
+            } catch (NumberFormatException e) {
+                // Skip invalid IDs
+            }
+        }
+        return ids;
+    }
+    
     private void updateDashboardKPIs() {
         SwingUtilities.invokeLater(() -> {
             // Update KPI values based on current data
+            List<User> users = userStore.snapshot();
             if (totalUsersLabel != null) {
                 totalUsersLabel.setText(String.valueOf(users.size()));
             }
             
             if (onlineUsersLabel != null) {
-                long onlineCount = onlineUsers.values().stream().mapToLong(b -> b ? 1 : 0).sum();
-                onlineUsersLabel.setText(String.valueOf(onlineCount));
+                onlineUsersLabel.setText(String.valueOf(userStore.onlineCount()));
             }
             
             if (lockedUsersLabel != null) {
@@ -3103,48 +3312,25 @@ public class AdminFrame extends JFrame {
     }
     
     private void updateOnlineStatus() {
-        SwingWorker<Map<String, Boolean>, Void> worker = new SwingWorker<Map<String, Boolean>, Void>() {
+        SwingWorker<java.util.Set<Integer>, Void> worker = new SwingWorker<java.util.Set<Integer>, Void>() {
             @Override
-            protected Map<String, Boolean> doInBackground() throws Exception {
+            protected java.util.Set<Integer> doInBackground() throws Exception {
                 Request request = new Request("GET_ONLINE_USERS");
                 Response response = networkClient.send(request);
                 
                 if (response != null && response.isSuccess()) {
-                    Map<String, Boolean> onlineMap = new ConcurrentHashMap<>();
-                    String onlineUserIds = response.getData().get("onlineUserIds");
-                    
-                    if (onlineUserIds != null && !onlineUserIds.trim().isEmpty()) {
-                        String[] userIds = onlineUserIds.split(",");
-                        java.util.Set<Integer> onlineIdSet = new java.util.HashSet<>();
-                        
-                        for (String idStr : userIds) {
-                            try {
-                                onlineIdSet.add(Integer.parseInt(idStr.trim()));
-                            } catch (NumberFormatException e) {
-                                // Skip invalid IDs
-                            }
-                        }
-                        
-                        // Update online status for all users
-                        for (User user : users) {
-                            boolean isOnline = onlineIdSet.contains(user.getId());
-                            onlineMap.put(user.getUsername(), isOnline);
-                        }
-                    }
-                    
-                    return onlineMap;
+                    return parseUserIds(response.getData().get("onlineUserIds"));
                 }
-                return new ConcurrentHashMap<>();
+                return null;
             }
             
             @Override
             protected void done() {
                 try {
-                    Map<String, Boolean> newOnlineUsers = get();
-                    if (newOnlineUsers != null && !newOnlineUsers.isEmpty()) {
-                        onlineUsers = newOnlineUsers;
-                        // Gọi filterUsers để refresh toàn bộ bảng với trạng thái mới
-                        filterUsers();
+                    java.util.Set<Integer> onlineIds = get();
+                    if (onlineIds != null) {
+                        // Only the rows whose flag changed are redrawn
+                        userStore.setOnlineSnapshot(onlineIds);
                     }
                 } catch (Exception e) {
                     // Ignore heartbeat errors
@@ -3161,22 +3347,26 @@ public class AdminFrame extends JFrame {
         }
         try {
             SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            java.util.Date d = sdf.parse(lastLogin);
-            long diffMs = System.currentTimeMillis() - d.getTime();
-            long minutes = diffMs / (60_000);
-            long hours = minutes / 60;
-            long days = hours / 24;
-            if (minutes < 1) return "Vừa xong";
-            if (minutes < 60) return minutes + " phút trước";
-            if (hours < 24) return hours + " giờ trước";
-            if (days < 7) return days + " ngày trước";
-            SimpleDateFormat display = new SimpleDateFormat("dd/MM/yyyy");
-            return display.format(d);
+            return formatSince(sdf.parse(lastLogin));
         } catch (Exception e) {
             return lastLogin;
         }
     }
     
+    // Relative to now, so it must be formatted when shown rather than kept
+    private static String formatSince(java.util.Date d) {
+        long diffMs = System.currentTimeMillis() - d.getTime();
+        long minutes = diffMs / (60_000);
+        long hours = minutes / 60;
+        long days = hours / 24;
+        if (minutes < 1) return "Vừa xong";
+        if (minutes < 60) return minutes + " phút trước";
+        if (hours < 24) return hours + " giờ trước";
+        if (days < 7) return days + " ngày trước";
+        SimpleDateFormat display = new SimpleDateFormat("dd/MM/yyyy");
+        return display.format(d);
+    }
+    
     private void showUserHistory(User user) {
         SwingWorker<String, Void> worker = new SwingWorker<String, Void>() {
             @Override
@@ -3537,7 +3727,7 @@ public class AdminFrame extends JFrame {
         }
 
     // Reflect logout immediately in local activity feed
-    onlineUsers.put(currentUser.getUsername(), false);
+    userStore.setOnline(Collections.emptySet(), Collections.singleton(currentUser.getId()));
     markCurrentUserOfflineInActivityFeed();
         
         // Send logout request
@@ -3608,18 +3798,15 @@ public class AdminFrame extends JFrame {
         if (heartbeatTimer != null) {
             heartbeatTimer.stop();
         }
+        searchDebounce.stop();
+        updateSearchDebounce.stop();
+        networkClient.removePushListener(presenceListener);
         super.dispose();
     }
     
     private void showUserDetailDialog(String username) {
         // Find user by username
-        User selectedUser = null;
-        for (User u : users) {
-            if (u.getUsername().equals(username)) {
-                selectedUser = u;
-                break;
-            }
-        }
+        User selectedUser = userStore.findByUsername(username);
 
         if (selectedUser == null) {
             JOptionPane.showMessageDialog(this, "Không tìm thấy thông tin người dùng!", "Lỗi", JOptionPane.ERROR_MESSAGE);
@@ -4156,12 +4343,13 @@ public class AdminFrame extends JFrame {
         private final JPanel userInfoPanel;
         private final JLabel contentLabel;
         private final JPanel chipPanel;
+        @SuppressWarnings("serial") private TableAvatars avatars; // for the table this renderer is installed on
         
         public ModernTableCellRenderer() {
             setLayout(new BorderLayout());
             setOpaque(true);
 
-            avatarLabel = new CircularAvatarLabel();
+            avatarLabel = new CircularAvatarLabel(true);
             avatarLabel.setPreferredSize(new Dimension(48, 48));
             avatarLabel.setHorizontalAlignment(JLabel.CENTER);
             avatarLabel.setOpaque(false);
@@ -4218,30 +4406,18 @@ public class AdminFrame extends JFrame {
                 avatarLabel.setText("");
 
                 if (avatarUrl != null && !avatarUrl.trim().isEmpty()) {
-                    // Check if image is already cached
-                    ImageIcon cachedIcon = ImageCache.getInstance().getImage(avatarUrl, 48, 48, new ImageCache.ImageLoadCallback() {
-                        @Override
-                        public void onImageLoaded(ImageIcon icon) {
-                            SwingUtilities.invokeLater(() -> {
-                                if (icon != null) {
-                                    avatarLabel.setIcon(icon);
-                                    avatarLabel.setText("");
-                                } else {
-                                    avatarLabel.setText("No Image");
-                                    avatarLabel.setIcon(null);
-                                }
-                                repaint();
-                            });
-                        }
-                    });
+                    // One load per URL; its cells repaint when it arrives
+                    if (avatars == null) avatars = new TableAvatars(table, 48);
+                    ImageIcon cachedIcon = avatars.get(avatarUrl, column);
                     
                     if (cachedIcon != null) {
                         // Already cached, use immediately
                         avatarLabel.setIcon(cachedIcon);
-                        avatarLabel.setText("");
-                    } else {
+                    } else if (avatars.isLoading(avatarUrl)) {
                         // Loading from cache or internet
                         avatarLabel.setText("Loading...");
+                    } else {
+                        avatarLabel.setText("No Image");
                     }
                 } else {
                     avatarLabel.setText("No Image");
@@ -4305,8 +4481,8 @@ public class AdminFrame extends JFrame {
                     topPanel.add(statusLabel);
                     statusPanel.add(topPanel);
 
-                    if (!status.isOnline && status.lastLogin != null && !status.lastLogin.isEmpty()) {
-                        JLabel lastLoginLabel = new JLabel(status.lastLogin);
+                    if (!status.isOnline) {
+                        JLabel lastLoginLabel = new JLabel(status.lastLoginText());
                         lastLoginLabel.setFont(new Font("Segoe UI", Font.PLAIN, 11));
                         lastLoginLabel.setForeground(new Color(156, 163, 175));
                         // Left align the offline time and give a small left margin
@@ -4490,14 +4666,8 @@ public class AdminFrame extends JFrame {
         public Component getTableCellEditorComponent(JTable table, Object value,
                 boolean isSelected, int row, int column) {
             
-            // Get user from the filtered list based on current panel
-            // For update panel, we need to get the user from the loaded data
-            List<User> currentUsers = getCurrentUsersForUpdatePanel();
-            if (row >= 0 && row < currentUsers.size()) {
-                selectedUser = currentUsers.get(row);
-            } else {
-                selectedUser = null;
-            }
+            // The action column holds the row's user
+            selectedUser = value instanceof User ? (User) value : null;
             
             return renderer.getTableCellRendererComponent(table, value, isSelected, true, row, column);
         }
@@ -4508,11 +4678,6 @@ public class AdminFrame extends JFrame {
         }
     }
     
-    private List<User> getCurrentUsersForUpdatePanel() {
-        // Return the current users list - this should be maintained for the update panel
-        return users; // Using the main users list for now
-    }
-
     // Modern action cell editor with primary action and dropdown menu
     private class ActionCellEditor extends AbstractCellEditor implements TableCellEditor {
         private ActionCellRenderer renderer;
@@ -4597,11 +4762,8 @@ public class AdminFrame extends JFrame {
         public Component getTableCellEditorComponent(JTable table, Object value,
                 boolean isSelected, int row, int column) {
             
-            if (row >= 0 && row < filteredUsers.size()) {
-                selectedUser = filteredUsers.get(row);
-            } else {
-                selectedUser = null;
-            }
+            // The action column holds the row's user
+            selectedUser = value instanceof User ? (User) value : null;
             
             return renderer.getTableCellRendererComponent(table, value, isSelected, true, row, column);
         }
@@ -4615,6 +4777,79 @@ public class AdminFrame extends JFrame {
     // Export removed from toolbar - placeholder removed
     
     // Helper classes for modern table rendering
+    // Table model over a list of users. A row's cells are built when the row is first painted and
+    // kept until that user changes, and a change repaints its row only, so long lists stay cheap.
+    private class UserTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private final String[] columns;
+        @SuppressWarnings("serial") private List<User> users = new ArrayList<>();
+        private Object[][] cells = new Object[0][];
+        @SuppressWarnings("serial") private final Map<Integer, Integer> rowById = new HashMap<>();
+
+        UserTableModel(String[] columns) {
+            this.columns = columns;
+        }
+
+        // Shows the given list; the model reads it directly, so it must not change without a new setUsers
+        void setUsers(List<User> users) {
+            this.users = users;
+            this.cells = new Object[users.size()][];
+            rowById.clear();
+            for (int i = 0; i < users.size(); i++) {
+                rowById.put(users.get(i).getId(), i);
+            }
+            fireTableDataChanged();
+        }
+
+        // Replaces the row of the user with this id, if shown, and repaints that row
+        void userChanged(User user) {
+            Integer row = rowById.get(user.getId());
+            if (row == null) return;
+            users.set(row, user);
+            cells[row] = null;
+            fireTableRowsUpdated(row, row);
+        }
+
+        User getUserAt(int row) {
+            return row >= 0 && row < users.size() ? users.get(row) : null;
+        }
+
+        int rowOf(int userId) {
+            Integer row = rowById.get(userId);
+            return row != null ? row : -1;
+        }
+
+        @Override
+        public int getRowCount() {
+            return cells.length;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return column == 8; // Only action column is editable
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Object[] values = cells[row];
+            if (values == null) {
+                values = userRow(users.get(row));
+                cells[row] = values;
+            }
+            return values[column];
+        }
+    }
+
     private static class UserDisplayInfo {
         final String username;
         final String fullName;
@@ -4655,15 +4890,32 @@ public class AdminFrame extends JFrame {
         }
     }
     
+    // Keeps the raw last login, parsed once; the cached cell must not hold "5 phút trước"
     private static class OnlineStatus {
         final boolean isOnline;
         final String status;
-        final String lastLogin;
+        private final String lastLogin;
+        private final java.util.Date lastLoginTime; // null when never logged in or unparseable
         
         OnlineStatus(boolean isOnline, String status, String lastLogin) {
             this.isOnline = isOnline;
             this.status = status;
             this.lastLogin = lastLogin;
+            java.util.Date parsed = null;
+            if (lastLogin != null && !lastLogin.isEmpty() && !"Chưa đăng nhập".equals(lastLogin)) {
+                try {
+                    parsed = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(lastLogin);
+                } catch (java.text.ParseException ignored) {
+                }
+            }
+            this.lastLoginTime = parsed;
+        }
+        
+        // Formatted at paint time, so it stays right for as long as the row is cached
+        String lastLoginText() {
+            if (lastLoginTime != null) return formatSince(lastLoginTime);
+            if (lastLogin == null || lastLogin.isEmpty() || "Chưa đăng nhập".equals(lastLogin)) return "Chưa có";
+            return lastLogin;
         }
     }
     
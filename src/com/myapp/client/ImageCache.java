@@ -29,6 +29,9 @@ public class ImageCache {
     // RAM Cache - lưu ImageIcon đã scale sẵn
     private static final ConcurrentHashMap<String, ImageIcon> memoryCache = new ConcurrentHashMap<>();
     
+    // Loads in progress by cache key, so a URL and size is fetched once however often it is asked for
+    private static final ConcurrentHashMap<String, CompletableFuture<ImageIcon>> pendingLoads = new ConcurrentHashMap<>();
+    
     // Thư mục cache trên disk - xác định theo thứ tự ưu tiên:
     // 1) system property 'login.cache.dir' (ví dụ: -Dlogin.cache.dir=C:\path\to\cache)
     // 2) workspace path (nếu tồn tại) -> C:\Users\Admin\eclipse-workspace\LoginSystem\.cache
@@ -99,25 +102,14 @@ public class ImageCache {
             return null;
         }
         
-        // Tạo cache key bao gồm URL và kích thước
-        String cacheKey = imageUrl + "_" + width + "x" + height;
-        
         // 1. Kiểm tra RAM cache trước
-        ImageIcon cachedIcon = memoryCache.get(cacheKey);
+        ImageIcon cachedIcon = memoryCache.get(imageUrl + "_" + width + "x" + height);
         if (cachedIcon != null) {
-            System.out.println("✓ Load ảnh từ RAM cache: " + imageUrl);
             return cachedIcon;
         }
         
         // 2. Load bất đồng bộ từ disk cache hoặc internet
-        CompletableFuture.supplyAsync(() -> {
-            try {
-                return loadImageFromCacheOrUrl(imageUrl, width, height, cacheKey);
-            } catch (Exception e) {
-                System.err.println("Lỗi load ảnh từ " + imageUrl + ": " + e.getMessage());
-                return null;
-            }
-        }).thenAccept(icon -> {
+        load(imageUrl, width, height).thenAccept(icon -> {
             if (icon != null && callback != null) {
                 // Gọi callback trên EDT thread
                 SwingUtilities.invokeLater(() -> callback.onImageLoaded(icon));
@@ -127,6 +119,37 @@ public class ImageCache {
         return null; // Trả về null, ảnh sẽ được load bất đồng bộ
     }
     
+    /**
+     * Ảnh đã scale theo URL và kích thước; hoàn tất với null nếu không tải được.
+     * Các lần gọi trùng URL và kích thước trong lúc đang tải dùng chung một lần tải.
+     */
+    public CompletableFuture<ImageIcon> load(String imageUrl, int width, int height) {
+        String cacheKey = imageUrl + "_" + width + "x" + height;
+        ImageIcon cachedIcon = memoryCache.get(cacheKey);
+        if (cachedIcon != null) {
+            return CompletableFuture.completedFuture(cachedIcon);
+        }
+        
+        CompletableFuture<ImageIcon> created = new CompletableFuture<>();
+        CompletableFuture<ImageIcon> pending = pendingLoads.putIfAbsent(cacheKey, created);
+        if (pending != null) {
+            return pending;
+        }
+        CompletableFuture.runAsync(() -> {
+            ImageIcon icon = null;
+            try {
+                icon = loadImageFromCacheOrUrl(imageUrl, width, height, cacheKey);
+            } catch (Exception e) {
+                System.err.println("Lỗi load ảnh từ " + imageUrl + ": " + e.getMessage());
+            } finally {
+                // Đã có trong RAM cache (hoặc lỗi): lần gọi sau không cần chờ nữa
+                pendingLoads.remove(cacheKey, created);
+            }
+            created.complete(icon);
+        });
+        return created;
+    }
+    
     /**
      * Load ảnh từ disk cache hoặc URL
      */
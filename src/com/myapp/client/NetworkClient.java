@@ -1,18 +1,83 @@
 package com.myapp.client;
 
+import com.myapp.common.Batch;
+import com.myapp.common.MessageStream;
+import com.myapp.common.ObjectMessageStream;
 import com.myapp.common.Request;
 import com.myapp.common.Response;
+import com.myapp.common.WireProtocol;
 
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class NetworkClient {
     private String host;
     private int port;
     private Socket socket;
-    private ObjectOutputStream oos;
-    private ObjectInputStream ois;
+    private MessageStream stream;
+
+    // Requests in flight, keyed by correlation id; answers may arrive in any order
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Response>> pending = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextCorrelationId = new AtomicLong();
+    private Thread readerThread;
+    private volatile Exception readerFailure;
+    private final List<Consumer<Response>> pushListeners = new CopyOnWriteArrayList<>();
+    private final Map<Long, Consumer<Response>> chunkListeners = new ConcurrentHashMap<>();
+    private volatile boolean batchUnsupported;
+
+    /*
+     * Read actions, with how long (ms) an answer may be reused. Identical reads sent while one
+     * is in flight share its answer; for a TTL above 0 later ones are also served from the
+     * cache until it expires. Every other action, except those in KEEPS_CACHE, may change what
+     * these return and empties the cache. Every caller gets its own copy of a shared answer.
+     */
+    private static final Map<String, Long> READ_TTL_MS = new HashMap<>();
+    static {
+        READ_TTL_MS.put("ADMIN_LIST_USERS", 2000L);
+        READ_TTL_MS.put("ADMIN_QUERY_USERS", 2000L);
+        READ_TTL_MS.put("ADMIN_GET_USER", 2000L);
+        READ_TTL_MS.put("GET_AUDITS", 1000L);
+        READ_TTL_MS.put("GET_ALL_LOGIN_LOGS", 1000L);
+        READ_TTL_MS.put("GET_USER_HISTORY", 0L);
+        READ_TTL_MS.put("GET_ONLINE_USERS", 0L); // changes with presence pushes, never cached
+        READ_TTL_MS.put("GET_PROFILE", 0L);
+    }
+    private static final Set<String> KEEPS_CACHE = new HashSet<>(Arrays.asList(
+            "PING", "SUBSCRIBE_PRESENCE", "UNSUBSCRIBE_PRESENCE"));
+    private static final int CACHE_PRUNE_SIZE = 64;
+
+    private static final class Cached {
+        final Response response;
+        final long expiresAt;
+
+        Cached(Response response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Map<String, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+    // Bumped when a write is sent and again when it completes, under the cache lock; a read
+    // sent before either does not fill the cache
+    private long cacheGeneration;
 
     public NetworkClient(String host, int port) {
         this.host = host;
@@ -21,21 +86,232 @@ public class NetworkClient {
 
     public void connect() throws Exception {
         socket = new Socket(host, port);
-        oos = new ObjectOutputStream(socket.getOutputStream());
-        ois = new ObjectInputStream(socket.getInputStream());
+        socket.setTcpNoDelay(true);
+        stream = WireProtocol.connect(new BufferedInputStream(socket.getInputStream()),
+                new BufferedOutputStream(socket.getOutputStream()));
+        if (stream == null) {
+            // Old server: it drops the connection after our handshake, so reconnect with Java serialization
+            socket.close();
+            socket = new Socket(host, port);
+            stream = new ObjectMessageStream(socket.getInputStream(), socket.getOutputStream());
+        }
+        readerThread = new Thread(this::readLoop, "network-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    public Response send(Request req) throws Exception {
+        try {
+            return sendAsync(req).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    public CompletableFuture<Response> sendAsync(Request req) {
+        Long ttl = READ_TTL_MS.get(req.getAction());
+        if (ttl == null) {
+            if (!mutates(req)) return sendAsync(req, null);
+            // The server may answer reads pipelined behind this write before applying it, so
+            // whatever they return is dropped again once the write completes, before callers see it
+            invalidateCache();
+            return sendAsync(req, null).whenComplete((resp, err) -> invalidateCache());
+        }
+        String key = cacheKey(req);
+        Cached hit = cache.get(key);
+        if (hit != null && hit.expiresAt > System.currentTimeMillis()) {
+            return CompletableFuture.completedFuture(copy(hit.response));
+        }
+        CompletableFuture<Response> f = new CompletableFuture<>();
+        CompletableFuture<Response> shared = inFlight.putIfAbsent(key, f);
+        if (shared != null) return shared.thenApply(NetworkClient::copy);
+
+        long generation;
+        synchronized (cache) {
+            generation = cacheGeneration;
+        }
+        sendAsync(req, null).whenComplete((resp, err) -> {
+            inFlight.remove(key, f);
+            if (resp != null && resp.isSuccess() && ttl > 0) {
+                synchronized (cache) {
+                    if (cacheGeneration == generation) {
+                        long now = System.currentTimeMillis();
+                        if (cache.size() >= CACHE_PRUNE_SIZE) cache.values().removeIf(c -> c.expiresAt <= now);
+                        cache.put(key, new Cached(copy(resp), now + ttl));
+                    }
+                }
+            }
+            if (err != null) f.completeExceptionally(err);
+            else f.complete(resp);
+        });
+        return f;
+    }
+
+    // Drops cached answers, and stops new reads from joining ones sent before a write
+    public void invalidateCache() {
+        synchronized (cache) {
+            cacheGeneration++;
+            cache.clear();
+            inFlight.clear();
+        }
+    }
+
+    private static Response copy(Response resp) {
+        Response c = new Response(resp.isSuccess(), resp.getMessage());
+        c.getData().putAll(resp.getData());
+        c.setCorrelationId(resp.getCorrelationId());
+        return c;
+    }
+
+    private static boolean mutates(Request req) {
+        if (Batch.ACTION.equals(req.getAction())) {
+            for (Map.Entry<String, String> e : req.getData().entrySet()) {
+                if (e.getKey().endsWith(".@action") && mutates(e.getValue())) return true;
+            }
+            return false;
+        }
+        return mutates(req.getAction());
+    }
+
+    private static boolean mutates(String action) {
+        return !READ_TTL_MS.containsKey(action) && !KEEPS_CACHE.contains(action);
+    }
+
+    private static String cacheKey(Request req) {
+        return req.getAction() + " " + new TreeMap<>(req.getData());
+    }
+
+    /**
+     * Asks for a chunked answer (GET_AUDITS, GET_ALL_LOGIN_LOGS). Every chunk, the last one
+     * included, is passed to onChunk on the reader thread as it arrives; the future completes
+     * with the last chunk. Servers without streaming send a single response, handled the same way.
+     */
+    public CompletableFuture<Response> sendStreaming(Request req, Consumer<Response> onChunk) {
+        req.put("stream", "true");
+        return sendAsync(req, onChunk);
+    }
+
+    private CompletableFuture<Response> sendAsync(Request req, Consumer<Response> onChunk) {
+        long id = nextCorrelationId.incrementAndGet();
+        req.setCorrelationId(id);
+        CompletableFuture<Response> f = new CompletableFuture<>();
+        if (onChunk != null) chunkListeners.put(id, onChunk);
+        pending.put(id, f);
+        if (readerFailure != null) {
+            pending.remove(id);
+            chunkListeners.remove(id);
+            f.completeExceptionally(readerFailure);
+            return f;
+        }
+        try {
+            synchronized (stream) {
+                stream.write(req);
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            chunkListeners.remove(id);
+            f.completeExceptionally(e);
+        }
+        return f;
+    }
+
+    /**
+     * Sends several requests in one BATCH round trip and returns their answers in order.
+     * A server that does not know BATCH gets the requests individually, pipelined.
+     */
+    public List<Response> sendBatch(List<Request> requests) throws Exception {
+        if (!batchUnsupported) {
+            Response resp = send(Batch.pack(requests));
+            if (resp.isSuccess()) return Batch.unpackResponses(resp);
+            if (resp.getMessage() == null || !resp.getMessage().startsWith("Unknown action")) {
+                throw new IOException(resp.getMessage());
+            }
+            batchUnsupported = true;
+        }
+        List<CompletableFuture<Response>> futures = new ArrayList<>();
+        for (Request r : requests) futures.add(sendAsync(r));
+        List<Response> answers = new ArrayList<>();
+        for (CompletableFuture<Response> f : futures) {
+            try {
+                answers.add(f.get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) throw (Exception) cause;
+                throw e;
+            }
+        }
+        return answers;
+    }
+
+    // Listeners run on the reader thread; Swing code must hop to the EDT itself
+    public void addPushListener(Consumer<Response> listener) {
+        pushListeners.add(listener);
+    }
+
+    public void removePushListener(Consumer<Response> listener) {
+        pushListeners.remove(listener);
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                Object o = stream.read();
+                if (!(o instanceof Response)) {
+                    throw new RuntimeException("Unexpected response type: " + o.getClass());
+                }
+                Response resp = (Response) o;
+                if (resp.getCorrelationId() == Response.PUSH_ID) {
+                    for (Consumer<Response> l : pushListeners) deliver(l, resp);
+                    continue;
+                }
+                long id = resp.getCorrelationId();
+                if ("true".equals(resp.getData().get("more"))) {
+                    Consumer<Response> listener = chunkListeners.get(id);
+                    if (listener != null) deliver(listener, resp);
+                    continue;
+                }
+                // Servers without correlation support answer in order with id 0
+                CompletableFuture<Response> f;
+                if (id != 0) {
+                    f = pending.remove(id);
+                } else {
+                    Map.Entry<Long, CompletableFuture<Response>> oldest = pending.pollFirstEntry();
+                    f = oldest != null ? oldest.getValue() : null;
+                    id = oldest != null ? oldest.getKey() : 0;
+                }
+                Consumer<Response> listener = chunkListeners.remove(id);
+                if (listener != null && resp.isSuccess()) deliver(listener, resp);
+                if (f != null) f.complete(resp);
+            }
+        } catch (Exception e) {
+            failPending(e);
+        }
+    }
+
+    // A failing listener is its own bug; it must not take the connection down with it
+    private static void deliver(Consumer<Response> listener, Response resp) {
+        try {
+            listener.accept(resp);
+        } catch (RuntimeException e) {
+            System.err.println("Response listener error: " + e.getMessage());
+            e.printStackTrace();
+        }
     }
 
-    public synchronized Response send(Request req) throws Exception {
-        oos.writeObject(req);
-        oos.flush();
-        Object o = ois.readObject();
-        if (o instanceof Response) return (Response)o;
-        throw new RuntimeException("Unexpected response type: " + o.getClass());
+    private void failPending(Exception e) {
+        readerFailure = e;
+        Map.Entry<Long, CompletableFuture<Response>> entry;
+        while ((entry = pending.pollFirstEntry()) != null) {
+            entry.getValue().completeExceptionally(e);
+        }
+        chunkListeners.clear();
     }
 
     public void close() {
-        try { if (ois!=null) ois.close(); } catch(Exception ignored){}
-        try { if (oos!=null) oos.close(); } catch(Exception ignored){}
+        try { if (stream!=null) stream.close(); } catch(Exception ignored){}
         try { if (socket!=null) socket.close(); } catch(Exception ignored){}
+        failPending(new IOException("Connection closed"));
     }
 }
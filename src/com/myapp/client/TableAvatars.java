@@ -0,0 +1,119 @@
+package com.myapp.client;
+
+import javax.swing.ImageIcon;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Circular avatar icons for the cells of one table. A cell renderer asks for its URL on every
+ * paint, so a missing avatar is requested from ImageCache once, and when it arrives only the
+ * visible cells showing that URL are repainted. Icons are masked to a circle once and kept in
+ * a bounded, least-recently-used cache shared by all tables, so painting just draws an image.
+ *
+ * EDT only.
+ */
+public class TableAvatars {
+    private static final int MAX_SPRITES = 256;
+
+    // "url@size" -> circular icon, eldest access dropped first
+    private static final Map<String, ImageIcon> sprites = new LinkedHashMap<String, ImageIcon>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ImageIcon> eldest) {
+            return size() > MAX_SPRITES;
+        }
+    };
+
+    private final JTable table;
+    private final int size;
+    private final Map<String, Integer> loading = new HashMap<>(); // url -> view column showing it
+    private final Set<String> failed = new HashSet<>();
+
+    public TableAvatars(JTable table, int size) {
+        this.table = table;
+        this.size = size;
+    }
+
+    /** The circular icon for url, or null while it loads or when it could not be loaded. */
+    public ImageIcon get(String url, int viewColumn) {
+        ImageIcon sprite = sprites.get(url + "@" + size);
+        if (sprite != null || loading.containsKey(url) || failed.contains(url)) {
+            return sprite;
+        }
+        CompletableFuture<ImageIcon> load = ImageCache.getInstance().load(url, size, size);
+        if (load.isDone()) {
+            // Already in ImageCache's memory: no need to wait for a repaint
+            ImageIcon icon = load.getNow(null);
+            if (icon == null) {
+                failed.add(url);
+                return null;
+            }
+            sprite = circular(icon.getImage(), size);
+            sprites.put(url + "@" + size, sprite);
+            return sprite;
+        }
+        loading.put(url, viewColumn);
+        load.thenAccept(icon -> SwingUtilities.invokeLater(() -> loaded(url, icon)));
+        return null;
+    }
+
+    public boolean isLoading(String url) {
+        return loading.containsKey(url);
+    }
+
+    private void loaded(String url, ImageIcon icon) {
+        Integer column = loading.remove(url);
+        if (icon != null) {
+            sprites.put(url + "@" + size, circular(icon.getImage(), size));
+        } else {
+            failed.add(url);
+        }
+        if (column == null || column >= table.getColumnCount()) return;
+
+        // Rows may have moved while loading, so look at what is on screen now
+        Rectangle visible = table.getVisibleRect();
+        int first = table.rowAtPoint(visible.getLocation());
+        int last = table.rowAtPoint(new Point(visible.x, visible.y + visible.height - 1));
+        if (first < 0) return;
+        if (last < 0) last = table.getRowCount() - 1;
+        for (int row = first; row <= last; row++) {
+            if (url.equals(table.getValueAt(row, column))) {
+                table.repaint(table.getCellRect(row, column, false));
+            }
+        }
+    }
+
+    // Scales to cover a size x size square, centred, and keeps only the anti-aliased circle
+    private static ImageIcon circular(Image source, int size) {
+        int w = source.getWidth(null);
+        int h = source.getHeight(null);
+        BufferedImage out = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.fill(new Ellipse2D.Double(0, 0, size, size));
+        g.setComposite(AlphaComposite.SrcIn);
+        if (w > 0 && h > 0) {
+            double scale = Math.max((double) size / w, (double) size / h);
+            int sw = (int) Math.ceil(w * scale);
+            int sh = (int) Math.ceil(h * scale);
+            g.drawImage(source, (size - sw) / 2, (size - sh) / 2, sw, sh, null);
+        }
+        g.dispose();
+        return new ImageIcon(out);
+    }
+}
@@ -0,0 +1,165 @@
+package com.myapp.client;
+
+import com.myapp.common.User;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Search index over the username, full name, email and id of the admin client's users.
+ * Text is folded to lower case without Vietnamese diacritics ("Nguyễn" and "nguyen" are the
+ * same), and every three-character run of a user's text lists that user, so a query only
+ * checks the users that share all of its trigrams instead of scanning everyone.
+ * Queries shorter than three characters scan the pre-folded text.
+ *
+ * An index never changes once built: build a new one from a store snapshot off the EDT and
+ * swap it in.
+ */
+public class UserSearchIndex {
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final char SEPARATOR = '\u0001'; // between fields, so no match spans two of them
+    private static final int DIRECT_CHECK_ROWS = 64;
+
+    private final int[] ids;                 // user id by row, in snapshot order
+    private final String[] texts;            // folded text by row
+    private final Map<Long, int[]> postings; // trigram -> rows containing it, ascending
+
+    private UserSearchIndex(int[] ids, String[] texts, Map<Long, int[]> postings) {
+        this.ids = ids;
+        this.texts = texts;
+        this.postings = postings;
+    }
+
+    public static UserSearchIndex build(List<User> users) {
+        int n = users.size();
+        int[] ids = new int[n];
+        String[] texts = new String[n];
+        Map<Long, RowList> lists = new HashMap<>();
+        for (int row = 0; row < n; row++) {
+            User u = users.get(row);
+            ids[row] = u.getId();
+            texts[row] = text(u);
+            String t = texts[row];
+            for (int i = 0; i + 3 <= t.length(); i++) {
+                long gram = trigram(t, i);
+                if (gram < 0) continue;
+                lists.computeIfAbsent(gram, k -> new RowList()).add(row);
+            }
+        }
+        Map<Long, int[]> postings = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<Long, RowList> e : lists.entrySet()) {
+            postings.put(e.getKey(), Arrays.copyOf(e.getValue().rows, e.getValue().size));
+        }
+        return new UserSearchIndex(ids, texts, postings);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /** Ids of the users whose text contains the query (already folded), in snapshot order. */
+    public int[] search(String foldedQuery) {
+        if (foldedQuery.isEmpty()) return ids.clone();
+
+        int[] candidates = null; // null: every row
+        if (foldedQuery.length() >= 3) {
+            List<int[]> lists = new ArrayList<>();
+            for (int i = 0; i + 3 <= foldedQuery.length(); i++) {
+                long gram = trigram(foldedQuery, i);
+                int[] rows = gram < 0 ? null : postings.get(gram);
+                if (rows == null) return new int[0];
+                lists.add(rows);
+            }
+            // Shortest list first keeps every intersection small; a few candidates are
+            // cheaper to check directly than to intersect further
+            lists.sort((a, b) -> Integer.compare(a.length, b.length));
+            candidates = lists.get(0);
+            for (int i = 1; i < lists.size() && candidates.length > DIRECT_CHECK_ROWS; i++) {
+                candidates = intersect(candidates, lists.get(i));
+            }
+        }
+
+        int count = candidates != null ? candidates.length : texts.length;
+        int[] found = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int row = candidates != null ? candidates[i] : i;
+            // Trigrams do not fix their order, so the text itself has the last word
+            if (texts[row].contains(foldedQuery)) found[size++] = ids[row];
+        }
+        return Arrays.copyOf(found, size);
+    }
+
+    /** Same test as search, for one user. */
+    public static boolean matches(User user, String foldedQuery) {
+        return foldedQuery.isEmpty() || text(user).contains(foldedQuery);
+    }
+
+    /** Lower case without diacritics: "Đặng Thị Ánh" -> "dang thi anh". */
+    public static String fold(String s) {
+        if (s == null || s.isEmpty()) return "";
+        String lower = s.toLowerCase(Locale.ROOT);
+        boolean ascii = true;
+        for (int i = 0; i < lower.length() && ascii; i++) {
+            ascii = lower.charAt(i) < 0x80;
+        }
+        if (ascii) return lower;
+        // đ is a letter of its own, not d plus a mark, so NFD leaves it alone
+        return MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("").replace('đ', 'd');
+    }
+
+    private static String text(User u) {
+        return fold(u.getUsername()) + SEPARATOR + fold(u.getFullName()) + SEPARATOR
+                + fold(u.getEmail()) + SEPARATOR + u.getId();
+    }
+
+    // Three chars packed in a long, or -1 for a run across a field boundary
+    private static long trigram(String s, int i) {
+        char a = s.charAt(i), b = s.charAt(i + 1), c = s.charAt(i + 2);
+        if (a == SEPARATOR || b == SEPARATOR || c == SEPARATOR) return -1;
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    // a is the shorter list
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[a.length];
+        int i = 0, j = 0, n = 0;
+        if (b.length / 8 > a.length) {
+            // Much longer b: look each row up instead of walking all of b
+            for (int row : a) {
+                j = Arrays.binarySearch(b, j, b.length, row);
+                if (j >= 0) out[n++] = row;
+                else j = -j - 1;
+            }
+            return Arrays.copyOf(out, n);
+        }
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // Growable row list; rows arrive in ascending order, so a repeat is always the last one
+    private static final class RowList {
+        int[] rows = new int[4];
+        int size;
+
+        void add(int row) {
+            if (size > 0 && rows[size - 1] == row) return;
+            if (size == rows.length) rows = Arrays.copyOf(rows, size * 2);
+            rows[size++] = row;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.myapp.client;
+
+import com.myapp.common.User;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The admin client's one copy of the user list, keyed by id, with each user's online flag.
+ * Every answer carrying user rows (full list, delta, query page) and every presence change
+ * is applied here, and panels listen for what changed instead of loading their own copy.
+ *
+ * Stored users are never modified: a changed user is replaced by a new object, and an
+ * unchanged one keeps its object, so panels can hold on to the users they show.
+ * Updates may come from any thread; listeners are always called on the EDT.
+ */
+public class UserStore {
+
+    /** Ids touched by one update, by kind of change. */
+    public static final class Change {
+        public final Set<Integer> added = new LinkedHashSet<>();
+        public final Set<Integer> updated = new LinkedHashSet<>(); // fields changed
+        public final Set<Integer> removed = new LinkedHashSet<>();
+        public final Set<Integer> presence = new LinkedHashSet<>(); // online flag changed
+
+        public boolean membershipChanged() {
+            return !added.isEmpty() || !removed.isEmpty();
+        }
+
+        public boolean fieldsChanged() {
+            return membershipChanged() || !updated.isEmpty();
+        }
+
+        boolean isEmpty() {
+            return !fieldsChanged() && presence.isEmpty();
+        }
+    }
+
+    public interface Listener {
+        void usersChanged(Change change);
+    }
+
+    private final Map<Integer, User> users = new TreeMap<>();
+    private final Set<Integer> online = new HashSet<>();
+    // While the server pushes presence, rows read from a query carry an older online flag
+    private boolean presencePushed;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Users ordered by id
+    public synchronized List<User> snapshot() {
+        return new ArrayList<>(users.values());
+    }
+
+    public synchronized User get(int id) {
+        return users.get(id);
+    }
+
+    public synchronized User findByUsername(String username) {
+        for (User u : users.values()) {
+            if (u.getUsername() != null && u.getUsername().equals(username)) return u;
+        }
+        return null;
+    }
+
+    public synchronized boolean isOnline(int id) {
+        return online.contains(id);
+    }
+
+    public synchronized int size() {
+        return users.size();
+    }
+
+    public synchronized int onlineCount() {
+        return online.size();
+    }
+
+    /**
+     * Set once a presence subscription is active and cleared when it is lost. While set, only
+     * presence pushes and snapshots move the online flag of users already stored.
+     */
+    public synchronized void setPresencePushed(boolean pushed) {
+        presencePushed = pushed;
+    }
+
+    /**
+     * Applies the rows of an ADMIN_LIST_USERS / ADMIN_QUERY_USERS answer, online flags included
+     * unless presence is pushed (then only for users not stored yet).
+     * With complete=true the rows are the whole list and users missing from it are removed.
+     * Returns the stored users in the order of the rows.
+     */
+    public List<User> applyRows(String usersData, boolean complete) {
+        List<User> parsed = new ArrayList<>();
+        Set<Integer> onlineIds = new HashSet<>();
+        parseRows(usersData, parsed, onlineIds);
+
+        List<User> result = new ArrayList<>(parsed.size());
+        Change change = new Change();
+        synchronized (this) {
+            for (User u : parsed) {
+                User old = users.get(u.getId());
+                if (old == null) {
+                    users.put(u.getId(), u);
+                    change.added.add(u.getId());
+                } else if (!sameFields(old, u)) {
+                    users.put(u.getId(), u);
+                    change.updated.add(u.getId());
+                } else {
+                    u = old;
+                }
+                result.add(u);
+                if (presencePushed && !change.added.contains(u.getId())) continue;
+                boolean nowOnline = onlineIds.contains(u.getId());
+                if (nowOnline ? online.add(u.getId()) : online.remove(u.getId())) {
+                    change.presence.add(u.getId());
+                }
+            }
+            if (complete) {
+                Set<Integer> keep = new HashSet<>();
+                for (User u : parsed) keep.add(u.getId());
+                for (Integer id : new ArrayList<>(users.keySet())) {
+                    if (!keep.contains(id)) {
+                        users.remove(id);
+                        online.remove(id);
+                        change.removed.add(id);
+                    }
+                }
+            }
+        }
+        fire(change);
+        return result;
+    }
+
+    // Presence delta, as pushed by the server
+    public void setOnline(Set<Integer> nowOnline, Set<Integer> nowOffline) {
+        Change change = new Change();
+        synchronized (this) {
+            for (Integer id : nowOnline) {
+                if (users.containsKey(id) && online.add(id)) change.presence.add(id);
+            }
+            for (Integer id : nowOffline) {
+                if (online.remove(id)) change.presence.add(id);
+            }
+        }
+        fire(change);
+    }
+
+    // Full presence snapshot: every user not listed is offline
+    public void setOnlineSnapshot(Set<Integer> onlineIds) {
+        Change change = new Change();
+        synchronized (this) {
+            for (Integer id : users.keySet()) {
+                boolean nowOnline = onlineIds.contains(id);
+                if (nowOnline ? online.add(id) : online.remove(id)) change.presence.add(id);
+            }
+        }
+        fire(change);
+    }
+
+    private void fire(Change change) {
+        if (change.isEmpty()) return;
+        Runnable notify = () -> {
+            for (Listener l : listeners) l.usersChanged(change);
+        };
+        if (SwingUtilities.isEventDispatchThread()) notify.run();
+        else SwingUtilities.invokeLater(notify);
+    }
+
+    // Rows are "id,username,fullName,email,avatar,role,status,ONLINE|OFFLINE,lastLogin,createdAt;"
+    private static void parseRows(String usersData, List<User> out, Set<Integer> onlineIds) {
+        if (usersData == null || usersData.trim().isEmpty()) return;
+        for (String record : usersData.split(";")) {
+            if (record.trim().isEmpty()) continue;
+            String[] parts = record.split(",", -1); // Keep empty strings
+            if (parts.length < 10) continue; // Minimum required fields
+            User user = new User();
+            try {
+                user.setId(Integer.parseInt(parts[0]));
+            } catch (NumberFormatException e) {
+                System.err.println("Error parsing user data: " + record);
+                continue;
+            }
+            user.setUsername(parts[1]);
+            user.setFullName(parts[2]);
+            user.setEmail(parts[3]);
+            user.setAvatar(parts[4]);
+            user.setRole(parts[5]);
+            user.setStatus(parts[6]);
+
+            String lastLogin = parts[8];
+            user.setLastLogin(lastLogin != null && !lastLogin.trim().isEmpty() ? lastLogin : "Chưa đăng nhập");
+            user.setCreatedAt(parts[9] != null ? parts[9] : "");
+
+            if ("ONLINE".equalsIgnoreCase(parts[7])) onlineIds.add(user.getId());
+            out.add(user);
+        }
+    }
+
+    private static boolean sameFields(User a, User b) {
+        return Objects.equals(a.getUsername(), b.getUsername())
+                && Objects.equals(a.getFullName(), b.getFullName())
+                && Objects.equals(a.getEmail(), b.getEmail())
+                && Objects.equals(a.getAvatar(), b.getAvatar())
+                && Objects.equals(a.getRole(), b.getRole())
+                && Objects.equals(a.getStatus(), b.getStatus())
+                && Objects.equals(a.getLastLogin(), b.getLastLogin())
+                && Objects.equals(a.getCreatedAt(), b.getCreatedAt());
+    }
+}
@@ -9,6 +9,8 @@ public class AuditLog implements Serializable {
     private String action;
     private String details;
     private String createdAt;
+    private String username; // joined from users when loaded for display; null if the user is gone
+    private String userRole;
 
     // getters/setters
     public int getId() { return id; }
@@ -21,4 +23,8 @@ public class AuditLog implements Serializable {
     public void setDetails(String details) { this.details = details; }
     public String getCreatedAt() { return createdAt; }
     public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+    public String getUserRole() { return userRole; }
+    public void setUserRole(String userRole) { this.userRole = userRole; }
 }
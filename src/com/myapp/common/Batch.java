@@ -0,0 +1,102 @@
+package com.myapp.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BATCH envelope: several requests (or their answers) flattened into one message so they
+ * share a round trip. Part i is stored under keys prefixed "i."; the action, success flag
+ * and message of a part use the reserved names "i.@action", "i.@ok" and "i.@msg".
+ * Being plain string data, it travels over both wire formats.
+ */
+public final class Batch {
+    public static final String ACTION = "BATCH";
+    public static final int MAX_PARTS = 32;
+
+    private static final String COUNT = "count";
+
+    private Batch() {}
+
+    public static Request pack(List<Request> parts) {
+        if (parts.size() > MAX_PARTS) throw new IllegalArgumentException("Too many batch parts: " + parts.size());
+        Request batch = new Request(ACTION);
+        batch.put(COUNT, String.valueOf(parts.size()));
+        for (int i = 0; i < parts.size(); i++) {
+            Request part = parts.get(i);
+            batch.put(i + ".@action", part.getAction());
+            copy(part.getData(), batch.getData(), i);
+        }
+        return batch;
+    }
+
+    public static List<Request> unpackRequests(Request batch) {
+        int n = count(batch.getData());
+        List<Request> parts = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            parts.add(new Request(batch.getData().get(i + ".@action")));
+        }
+        for (Map.Entry<String, String> e : batch.getData().entrySet()) {
+            int i = partIndex(e.getKey(), n);
+            if (i >= 0 && e.getKey().charAt(e.getKey().indexOf('.') + 1) != '@') {
+                parts.get(i).put(e.getKey().substring(e.getKey().indexOf('.') + 1), e.getValue());
+            }
+        }
+        return parts;
+    }
+
+    public static Response packResponses(List<Response> parts) {
+        Response batch = new Response(true, "OK");
+        batch.put(COUNT, String.valueOf(parts.size()));
+        for (int i = 0; i < parts.size(); i++) {
+            Response part = parts.get(i);
+            batch.put(i + ".@ok", String.valueOf(part.isSuccess()));
+            batch.put(i + ".@msg", part.getMessage());
+            copy(part.getData(), batch.getData(), i);
+        }
+        return batch;
+    }
+
+    public static List<Response> unpackResponses(Response batch) {
+        int n = count(batch.getData());
+        List<Response> parts = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            parts.add(new Response("true".equals(batch.getData().get(i + ".@ok")), batch.getData().get(i + ".@msg")));
+        }
+        for (Map.Entry<String, String> e : batch.getData().entrySet()) {
+            int i = partIndex(e.getKey(), n);
+            if (i >= 0 && e.getKey().charAt(e.getKey().indexOf('.') + 1) != '@') {
+                parts.get(i).put(e.getKey().substring(e.getKey().indexOf('.') + 1), e.getValue());
+            }
+        }
+        return parts;
+    }
+
+    private static void copy(Map<String, String> from, Map<String, String> to, int i) {
+        for (Map.Entry<String, String> e : from.entrySet()) {
+            to.put(i + "." + e.getKey(), e.getValue());
+        }
+    }
+
+    private static int count(Map<String, String> data) {
+        try {
+            int n = Integer.parseInt(data.get(COUNT));
+            if (n < 0 || n > MAX_PARTS) throw new IllegalArgumentException("Invalid batch size: " + n);
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Missing batch size");
+        }
+    }
+
+    // Index of the part a key belongs to, or -1 for envelope keys
+    private static int partIndex(String key, int n) {
+        int dot = key.indexOf('.');
+        if (dot <= 0 || dot == key.length() - 1) return -1;
+        try {
+            int i = Integer.parseInt(key.substring(0, dot));
+            return i < n ? i : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.myapp.common;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact wire format: every message is one length-prefixed frame
+ *   int length | byte kind | varlong correlationId | header | varint n | n x (key, value)
+ * where the header is the action for a request and success + message for a response.
+ * Strings are a varint (byte length + 1, 0 for null) followed by UTF-8 bytes.
+ * A compressed frame sets FLAG_DEFLATED on kind and is followed by the varint length of
+ * everything after kind, then that content deflated.
+ */
+public class BinaryMessageStream implements MessageStream {
+    public static final int MAX_FRAME = 16 * 1024 * 1024;
+    private static final int RETAINED_BUFFER = 64 * 1024; // larger one-off buffers are not kept on idle connections
+
+    private static final byte KIND_REQUEST = 1;
+    private static final byte KIND_RESPONSE = 2;
+    private static final int FLAG_DEFLATED = 0x80;
+
+    // Deflaters hold native buffers, so they are shared instead of kept per idle connection
+    private static final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private FrameBuffer frame = new FrameBuffer();
+    private int compressAbove = -1; // -1 = compression not negotiated
+    private byte[] readBuf = new byte[256];
+    private byte[] cur;
+    private int readPos;
+
+    public BinaryMessageStream(InputStream in, OutputStream out) {
+        this.in = new DataInputStream(in);
+        this.out = new DataOutputStream(out);
+    }
+
+    // Responses whose encoded size exceeds the threshold are deflated
+    public void enableCompression(int threshold) {
+        this.compressAbove = threshold;
+    }
+
+    @Override
+    public Object read() throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > MAX_FRAME) {
+            throw new StreamCorruptedException("Invalid frame length: " + length);
+        }
+        byte[] buf = readBuf;
+        if (buf.length < length) {
+            buf = new byte[length];
+            if (length <= RETAINED_BUFFER) readBuf = buf;
+        }
+        in.readFully(buf, 0, length);
+        if ((buf[0] & FLAG_DEFLATED) != 0) {
+            buf = inflate(buf, length);
+            length = buf.length;
+        }
+        try {
+            return decode(buf, length);
+        } catch (IndexOutOfBoundsException e) {
+            throw new StreamCorruptedException("Truncated frame");
+        } finally {
+            cur = null;
+        }
+    }
+
+    private Object decode(byte[] buf, int length) throws IOException {
+        cur = buf;
+        readPos = 0;
+        byte kind = cur[readPos++];
+        long correlationId = readVarLong();
+        Map<String, String> data;
+        Object message;
+        if (kind == KIND_REQUEST) {
+            Request req = new Request(readString());
+            req.setCorrelationId(correlationId);
+            data = req.getData();
+            message = req;
+        } else if (kind == KIND_RESPONSE) {
+            boolean success = cur[readPos++] != 0;
+            Response resp = new Response(success, readString());
+            resp.setCorrelationId(correlationId);
+            data = resp.getData();
+            message = resp;
+        } else {
+            throw new StreamCorruptedException("Unknown message kind: " + kind);
+        }
+        int n = (int) readVarLong();
+        for (int i = 0; i < n; i++) {
+            String k = readString();
+            data.put(k, readString());
+        }
+        if (readPos != length) throw new StreamCorruptedException("Frame length mismatch");
+        return message;
+    }
+
+    @Override
+    public void write(Object message) throws IOException {
+        frame.reset();
+        Map<String, String> data;
+        if (message instanceof Request) {
+            Request req = (Request) message;
+            frame.write(KIND_REQUEST);
+            writeVarLong(req.getCorrelationId());
+            writeString(req.getAction());
+            data = req.getData();
+        } else if (message instanceof Response) {
+            Response resp = (Response) message;
+            frame.write(KIND_RESPONSE);
+            writeVarLong(resp.getCorrelationId());
+            frame.write(resp.isSuccess() ? 1 : 0);
+            writeString(resp.getMessage());
+            data = resp.getData();
+        } else {
+            throw new IllegalArgumentException("Unsupported message type: " + message.getClass());
+        }
+        writeVarLong(data.size());
+        for (Map.Entry<String, String> e : data.entrySet()) {
+            writeString(e.getKey());
+            writeString(e.getValue());
+        }
+        if (frame.size() > MAX_FRAME) throw new IOException("Message too large: " + frame.size() + " bytes");
+
+        if (compressAbove >= 0 && message instanceof Response && frame.size() > compressAbove) {
+            writeDeflated();
+        } else {
+            out.writeInt(frame.size());
+            frame.writeTo(out);
+        }
+        out.flush();
+        if (frame.size() > RETAINED_BUFFER) frame = new FrameBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try { in.close(); } catch (IOException ignored) {}
+        out.close();
+    }
+
+    private void writeDeflated() throws IOException {
+        long start = System.nanoTime();
+        byte[] src = frame.array();
+        int bodyLength = frame.size() - 1;
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream packed = new ByteArrayOutputStream(bodyLength / 4 + 16);
+        try {
+            deflater.setInput(src, 1, bodyLength);
+            deflater.finish();
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                packed.write(chunk, 0, n);
+            }
+        } finally {
+            deflater.reset();
+            deflaters.offer(deflater);
+        }
+
+        // Incompressible payloads go out as they are, but the attempt still cost CPU
+        byte[] header = varLongBytes(bodyLength);
+        int length = 1 + header.length + packed.size();
+        if (length >= frame.size()) {
+            out.writeInt(frame.size());
+            frame.writeTo(out);
+            CompressionStats.record(frame.size(), frame.size(), System.nanoTime() - start);
+            return;
+        }
+        out.writeInt(length);
+        out.write(src[0] | FLAG_DEFLATED);
+        out.write(header);
+        packed.writeTo(out);
+        CompressionStats.record(frame.size(), length, System.nanoTime() - start);
+    }
+
+    private static byte[] inflate(byte[] buf, int length) throws IOException {
+        int pos = 1;
+        long bodyLength = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (pos >= length || shift >= 35) throw new StreamCorruptedException("Malformed varint");
+            byte b = buf[pos++];
+            bodyLength |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+        }
+        if (bodyLength <= 0 || bodyLength >= MAX_FRAME) {
+            throw new StreamCorruptedException("Invalid frame length: " + bodyLength);
+        }
+
+        byte[] plain = new byte[(int) bodyLength + 1];
+        plain[0] = (byte) (buf[0] & ~FLAG_DEFLATED);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buf, pos, length - pos);
+            int n = 1;
+            while (n < plain.length && !inflater.finished()) {
+                int r = inflater.inflate(plain, n, plain.length - n);
+                if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += r;
+            }
+            if (n != plain.length) throw new StreamCorruptedException("Truncated compressed frame");
+        } catch (DataFormatException e) {
+            throw new StreamCorruptedException("Corrupt compressed frame: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return plain;
+    }
+
+    private static byte[] varLongBytes(long v) {
+        ByteArrayOutputStream b = new ByteArrayOutputStream(5);
+        while ((v & ~0x7FL) != 0) {
+            b.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        b.write((int) v);
+        return b.toByteArray();
+    }
+
+    private void writeVarLong(long v) {
+        while ((v & ~0x7FL) != 0) {
+            frame.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        frame.write((int) v);
+    }
+
+    private long readVarLong() throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = cur[readPos++];
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    private void writeString(String s) {
+        if (s == null) {
+            frame.write(0);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(b.length + 1L);
+        frame.write(b, 0, b.length);
+    }
+
+    private String readString() throws IOException {
+        int len = (int) readVarLong() - 1;
+        if (len < 0) return null;
+        String s = new String(cur, readPos, len, StandardCharsets.UTF_8);
+        readPos += len;
+        return s;
+    }
+
+    // Exposes the backing array so frames can be deflated without a copy
+    private static class FrameBuffer extends ByteArrayOutputStream {
+        FrameBuffer() {
+            super(256);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.myapp.common;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters for negotiated payload compression. Every attempt is counted, including
+ * frames sent uncompressed because deflate did not make them smaller, so the time spent on
+ * incompressible payloads shows up too.
+ */
+public class CompressionStats {
+    private static final LongAdder attempts = new LongAdder();
+    private static final LongAdder frames = new LongAdder();
+    private static final LongAdder bytesBefore = new LongAdder();
+    private static final LongAdder bytesAfter = new LongAdder();
+    private static final LongAdder nanos = new LongAdder();
+
+    // after is what went on the wire: equal to before when the frame was sent uncompressed
+    static void record(int before, int after, long elapsedNanos) {
+        attempts.increment();
+        if (after < before) frames.increment();
+        bytesBefore.add(before);
+        bytesAfter.add(after);
+        nanos.add(elapsedNanos);
+    }
+
+    public static long getAttempts() { return attempts.sum(); }
+    public static long getFramesCompressed() { return frames.sum(); }
+    public static long getBytesSaved() { return bytesBefore.sum() - bytesAfter.sum(); }
+    public static long getCompressionNanos() { return nanos.sum(); }
+
+    public static String summary() {
+        long before = bytesBefore.sum();
+        long after = bytesAfter.sum();
+        return "compression attempts=" + attempts.sum() + ", compressed frames=" + frames.sum()
+                + ", bytes " + before + " -> " + after
+                + " (saved " + (before - after) + "), time=" + (nanos.sum() / 1000000) + " ms";
+    }
+}
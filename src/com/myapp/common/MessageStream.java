@@ -0,0 +1,15 @@
+package com.myapp.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * One side of a connection: reads and writes Request/Response messages
+ * in whatever wire format was negotiated by WireProtocol.
+ */
+public interface MessageStream extends Closeable {
+    Object read() throws IOException, ClassNotFoundException;
+
+    // Writes and flushes one message
+    void write(Object message) throws IOException;
+}
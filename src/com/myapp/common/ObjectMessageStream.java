@@ -0,0 +1,37 @@
+package com.myapp.common;
+
+import java.io.*;
+
+/**
+ * Legacy wire format: Java serialization, kept for clients that do not negotiate.
+ */
+public class ObjectMessageStream implements MessageStream {
+    private final ObjectOutputStream oos;
+    private final ObjectInputStream ois;
+
+    // Writes our stream header before reading the peer's, like the original client and server did
+    public ObjectMessageStream(InputStream in, OutputStream out) throws IOException {
+        this.oos = new ObjectOutputStream(out);
+        this.oos.flush();
+        this.ois = new ObjectInputStream(in);
+    }
+
+    @Override
+    public Object read() throws IOException, ClassNotFoundException {
+        return ois.readObject();
+    }
+
+    @Override
+    public void write(Object message) throws IOException {
+        oos.writeObject(message);
+        // Drop the handle table so a long-lived connection does not keep every message ever sent
+        oos.reset();
+        oos.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try { ois.close(); } catch (IOException ignored) {}
+        oos.close();
+    }
+}
@@ -8,6 +8,7 @@ public class Request implements Serializable {
     private static final long serialVersionUID = 1L;
     private String action;
     private Map<String, String> data = new HashMap<>();
+    private long correlationId; // 0 = legacy strict request/response
 
     public Request(String action) {
         this.action = action;
@@ -15,4 +16,6 @@ public class Request implements Serializable {
     public String getAction() { return action; }
     public Map<String,String> getData() { return data; }
     public void put(String k, String v) { data.put(k, v); }
+    public long getCorrelationId() { return correlationId; }
+    public void setCorrelationId(long correlationId) { this.correlationId = correlationId; }
 }
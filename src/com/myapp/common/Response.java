@@ -6,9 +6,12 @@ import java.util.Map;
 
 public class Response implements Serializable {
     private static final long serialVersionUID = 1L;
+    // Correlation id of messages the server sends on its own, e.g. presence events
+    public static final long PUSH_ID = -1;
     private boolean success;
     private String message;
     private Map<String,String> data = new HashMap<>();
+    private long correlationId; // 0 = legacy strict request/response
 
     public Response(boolean success, String message) {
         this.success = success;
@@ -18,4 +21,6 @@ public class Response implements Serializable {
     public String getMessage() { return message; }
     public Map<String,String> getData() { return data; }
     public void put(String k, String v) { data.put(k, v); }
+    public long getCorrelationId() { return correlationId; }
+    public void setCorrelationId(long correlationId) { this.correlationId = correlationId; }
 }
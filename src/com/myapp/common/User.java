@@ -1,6 +1,9 @@
 package com.myapp.common;
 
 import java.io.Serializable;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
 
 public class User implements Serializable {
     private int id;
@@ -16,8 +19,43 @@ public class User implements Serializable {
     private String lastLogin;
     private boolean isOnline;  // Track online status
 
+    // Persistent fields whose value a setter changed since the last clearChanges(), so an
+    // update only needs to write those columns. Not sent over the wire.
+    public enum Field { USERNAME, PASSWORD_HASH, FULL_NAME, EMAIL, AVATAR, ROLE, STATUS, LAST_LOGIN }
+    private transient EnumSet<Field> changed;
+
     public User() {}
 
+    public User(User other) {
+        this.id = other.id;
+        this.username = other.username;
+        this.passwordHash = other.passwordHash;
+        this.fullName = other.fullName;
+        this.email = other.email;
+        this.avatar = other.avatar;
+        this.role = other.role;
+        this.status = other.status;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.lastLogin = other.lastLogin;
+        this.isOnline = other.isOnline;
+        this.changed = other.changed == null ? null : EnumSet.copyOf(other.changed);
+    }
+
+    public Set<Field> getChangedFields() {
+        return changed == null ? EnumSet.noneOf(Field.class) : EnumSet.copyOf(changed);
+    }
+
+    public void clearChanges() {
+        changed = null;
+    }
+
+    private void mark(Field field, Object oldValue, Object newValue) {
+        if (Objects.equals(oldValue, newValue)) return;
+        if (changed == null) changed = EnumSet.noneOf(Field.class);
+        changed.add(field);
+    }
+
     // Getter & Setter
     public int getId() {
         return id;
@@ -30,6 +68,7 @@ public class User implements Serializable {
         return username;
     }
     public void setUsername(String username) {
+        mark(Field.USERNAME, this.username, username);
         this.username = username;
     }
 
@@ -37,6 +76,7 @@ public class User implements Serializable {
         return passwordHash;
     }
     public void setPasswordHash(String passwordHash) {
+        mark(Field.PASSWORD_HASH, this.passwordHash, passwordHash);
         this.passwordHash = passwordHash;
     }
 
@@ -44,6 +84,7 @@ public class User implements Serializable {
         return fullName;
     }
     public void setFullName(String fullName) {
+        mark(Field.FULL_NAME, this.fullName, fullName);
         this.fullName = fullName;
     }
 
@@ -51,6 +92,7 @@ public class User implements Serializable {
         return email;
     }
     public void setEmail(String email) {
+        mark(Field.EMAIL, this.email, email);
         this.email = email;
     }
 
@@ -58,6 +100,7 @@ public class User implements Serializable {
         return avatar;
     }
     public void setAvatar(String avatar) {
+        mark(Field.AVATAR, this.avatar, avatar);
         this.avatar = avatar;
     }
 
@@ -65,6 +108,7 @@ public class User implements Serializable {
         return role;
     }
     public void setRole(String role) {
+        mark(Field.ROLE, this.role, role);
         this.role = role;
     }
 
@@ -72,6 +116,7 @@ public class User implements Serializable {
         return status;
     }
     public void setStatus(String status) {
+        mark(Field.STATUS, this.status, status);
         this.status = status;
     }
 
@@ -93,6 +138,7 @@ public class User implements Serializable {
         return lastLogin;
     }
     public void setLastLogin(String lastLogin) {
+        mark(Field.LAST_LOGIN, this.lastLogin, lastLogin);
         this.lastLogin = lastLogin;
     }
 
@@ -0,0 +1,62 @@
+package com.myapp.common;
+
+import java.io.*;
+
+/**
+ * Connection handshake. A new client opens with MAGIC + its highest version and the
+ * server answers with MAGIC + the version to use. A Java serialization stream starts
+ * with 0xACED instead, which is how the server recognises old clients and how a new
+ * client recognises an old server.
+ */
+public class WireProtocol {
+    public static final int MAGIC = 0x4C535953; // "LSYS"
+    public static final int VERSION_BINARY = 1;
+    public static final int VERSION_DEFLATE = 2; // binary + deflate for large responses
+    public static final int CURRENT_VERSION = VERSION_DEFLATE;
+
+    // Responses smaller than this are not worth the CPU of compressing
+    public static final int COMPRESS_THRESHOLD = Integer.getInteger("wire.compressThreshold", 1024);
+
+    private static final int JAVA_STREAM_MAGIC = 0xACED;
+
+    // Server side: detects the client's format from its first bytes
+    public static MessageStream accept(InputStream in, OutputStream out) throws IOException {
+        PushbackInputStream pin = new PushbackInputStream(in, 2);
+        int b1 = pin.read();
+        int b2 = pin.read();
+        if (b1 < 0 || b2 < 0) throw new EOFException();
+        if (((b1 << 8) | b2) == JAVA_STREAM_MAGIC) {
+            pin.unread(new byte[] { (byte) b1, (byte) b2 });
+            return new ObjectMessageStream(pin, out);
+        }
+
+        DataInputStream din = new DataInputStream(pin);
+        int magic = (b1 << 24) | (b2 << 16) | din.readUnsignedShort();
+        if (magic != MAGIC) throw new StreamCorruptedException("Unknown protocol");
+        int version = Math.min(din.readUnsignedByte(), CURRENT_VERSION);
+
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(MAGIC);
+        dout.writeByte(version);
+        dout.flush();
+        BinaryMessageStream stream = new BinaryMessageStream(pin, out);
+        if (version >= VERSION_DEFLATE) stream.enableCompression(COMPRESS_THRESHOLD);
+        return stream;
+    }
+
+    // Client side: returns null when the server only speaks Java serialization,
+    // in which case the caller must reconnect with an ObjectMessageStream
+    public static MessageStream connect(InputStream in, OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(MAGIC);
+        dout.writeByte(CURRENT_VERSION);
+        dout.flush();
+
+        DataInputStream din = new DataInputStream(in);
+        int magic = din.readInt();
+        if ((magic >>> 16) == JAVA_STREAM_MAGIC) return null;
+        if (magic != MAGIC) throw new StreamCorruptedException("Unknown protocol");
+        din.readUnsignedByte(); // negotiated version; compressed frames are self-describing
+        return new BinaryMessageStream(in, out);
+    }
+}
@@ -6,20 +6,72 @@ import com.myapp.common.AuditLog;
 import com.myapp.common.Utils;
 
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Business logic: login, lockout policy, admin operations
  */
 public class AuthService {
     private final MySQLDatabase db;
+    private final LogWriter logs; // audit_logs and login_attempts inserts
     private final int MAX_FAILED = 5;
+    private static final long WATERMARK_OVERLAP_MS = 2000;
 
-    public AuthService(MySQLDatabase db) {
+    /*
+     * Updates of one account (login bookkeeping, admin edits, password changes) are
+     * serialized by a lock keyed on its username, so logins of different accounts run
+     * in parallel. Read-only operations take no lock.
+     */
+    private final StripedLocks accountLocks = new StripedLocks(64);
+
+    // Failed attempts counted towards MAX_FAILED, kept in memory instead of queried per login
+    private static final int FAILURE_WINDOW_MINUTES = 60;
+    private final FailedLoginTracker failedLogins = new FailedLoginTracker(FAILURE_WINDOW_MINUTES * 60000L, 64, 100000);
+
+    private final LatencySamples loginLatency = new LatencySamples("login", 4096);
+
+    public AuthService(MySQLDatabase db, LogWriter logs) {
         this.db = db;
+        this.logs = logs;
+        // Rebuild the counters so a restart does not forgive recent failures
+        try {
+            failedLogins.load(db.loadRecentFailures(FAILURE_WINDOW_MINUTES));
+        } catch (SQLException e) {
+            System.err.println("Error loading recent failed attempts: " + e.getMessage());
+        }
     }
 
-    public synchronized AuthResult login(String username, String password, String ip) throws SQLException {
+    private Lock accountLock(String username) {
+        // Usernames compare case-insensitively in MySQL, so "Admin" and "admin" must share a lock
+        return accountLocks.get(username == null ? "" : username.toLowerCase(Locale.ROOT));
+    }
+
+    public AuthResult login(String username, String password, String ip) throws SQLException {
+        long start = System.nanoTime();
+        Lock lock = accountLock(username);
+        lock.lock();
+        try {
+            return doLogin(username, password, ip);
+        } finally {
+            lock.unlock();
+            loginLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    public String loginLatencySummary() {
+        return loginLatency.summary();
+    }
+
+    /*
+     * One read (often served by the user cache), then every side effect of the attempt —
+     * login_attempts row, audit rows and last_login — goes to the log writer as a single
+     * entry and commits in one transaction. Only locking an account writes users directly.
+     */
+    private AuthResult doLogin(String username, String password, String ip) throws SQLException {
         Optional<User> ou = db.findByUsername(username);
         LoginAttempt attempt = new LoginAttempt();
         attempt.setUsername(username);
@@ -27,60 +79,66 @@ public class AuthService {
 
         if (!ou.isPresent()) {
             attempt.setSuccess(false);
-            db.addAttempt(attempt);
-            db.addAudit(createAudit(null, "LOGIN_FAILED", "Unknown user " + username));
+            logs.addLogin(attempt, createAudit(null, "LOGIN_FAILED", "Unknown user " + username));
             return AuthResult.fail("Người dùng không tồn tại");
         }
         User u = ou.get();
         if (!"ACTIVE".equalsIgnoreCase(u.getStatus())) {
             attempt.setSuccess(false);
             attempt.setUserId(u.getId());
-            db.addAttempt(attempt);
-            db.addAudit(createAudit(u.getId(), "LOGIN_BLOCKED", "Attempt when status=" + u.getStatus()));
+            failedLogins.recordFailure(username);
+            logs.addLogin(attempt, createAudit(u.getId(), "LOGIN_BLOCKED", "Attempt when status=" + u.getStatus()));
             return AuthResult.fail("Tài khoản không được phép đăng nhập: " + u.getStatus());
         }
         String hashed = Utils.sha256(password);
         if (!hashed.equals(u.getPasswordHash())) {
             attempt.setSuccess(false);
             attempt.setUserId(u.getId());
-            db.addAttempt(attempt);
-            db.addAudit(createAudit(u.getId(), "LOGIN_FAILED", "Wrong password"));
+            AuditLog failedAudit = createAudit(u.getId(), "LOGIN_FAILED", "Wrong password");
             
             // check failed count AFTER adding this failed attempt
-            int failed = countRecentFailed(username);
+            int failed = failedLogins.recordFailure(username);
             if (failed >= MAX_FAILED) {
                 u.setStatus("LOCKED");
                 db.updateUser(u);
-                db.addAudit(createAudit(u.getId(), "LOCKED", "Too many failed attempts (5 times)"));
+                logs.addLogin(attempt, failedAudit, createAudit(u.getId(), "LOCKED", "Too many failed attempts (5 times)"));
                 return AuthResult.fail("Tài khoản bị khóa do 5 lần đăng nhập sai liên tiếp");
             }
+            logs.addLogin(attempt, failedAudit);
             return AuthResult.fail("Sai mật khẩu. Lần đăng nhập sai liên tiếp: " + failed + "/5");
         }
         // success
         attempt.setSuccess(true);
         attempt.setUserId(u.getId());
-        db.addAttempt(attempt);
         
-        // Reset failed login attempts count on successful login
-        db.resetFailedAttempts(username);
+        // Reset failed login attempts count on successful login; the rows stay in login_attempts as history
+        failedLogins.reset(username);
         
-        // update last login
+        // last_login is written with the attempt; the returned user shows it already
         u.setLastLogin(Utils.now());
-        db.updateUser(u);
-        db.addAudit(createAudit(u.getId(), "LOGIN_SUCCESS", "Login from " + ip));
+        logs.addLogin(attempt, createAudit(u.getId(), "LOGIN_SUCCESS", "Login from " + ip));
         return AuthResult.success(u);
     }
 
-    private int countRecentFailed(String username) {
-        // Use MySQLDatabase to count recent failed attempts
+    // Work on one account by id, holding its lock; the row is read again once the lock is held
+    private ResponseWrapper updateAccount(int id, String notFound, AccountUpdate update) throws Exception {
+        Optional<User> ou = db.findById(id);
+        if (!ou.isPresent()) return ResponseWrapper.error(notFound);
+        Lock lock = accountLock(ou.get().getUsername());
+        lock.lock();
         try {
-            return db.countRecentFailed(username);
-        } catch (SQLException e) {
-            System.err.println("Error counting recent failed attempts: " + e.getMessage());
-            return 0; // Return 0 on error to avoid blocking users due to database issues
+            ou = db.findById(id);
+            if (!ou.isPresent()) return ResponseWrapper.error(notFound);
+            return update.apply(ou.get());
+        } finally {
+            lock.unlock();
         }
     }
 
+    private interface AccountUpdate {
+        ResponseWrapper apply(User u) throws Exception;
+    }
+
     private AuditLog createAudit(Integer userId, String action, String details) {
         AuditLog a = new AuditLog();
         a.setUserId(userId);
@@ -91,13 +149,43 @@ public class AuthService {
     }
 
     // Admin operations
-    public synchronized ResponseWrapper listUsers() {
+    public ResponseWrapper listUsers() {
         try {
             return ResponseWrapper.okWith("users", db.loadAllUsers());
         } catch (Exception e) { return ResponseWrapper.error(e.getMessage()); }
     }
 
-    public synchronized ResponseWrapper createUser(String username, String password, String fullName, String email, String avatar, String role) {
+    // Users changed since the watermark (all users when since is null), with the next watermark
+    public ResponseWrapper listUsersChangedSince(Timestamp since) {
+        try {
+            // Read the clock first; the overlap covers rows stamped earlier but committed after the query
+            Timestamp now = db.currentTimestamp();
+            UserDelta delta = new UserDelta();
+            delta.users = since == null ? db.loadAllUsers() : db.loadUsersChangedSince(since);
+            delta.total = db.countUsers();
+            delta.watermark = new Timestamp(now.getTime() - WATERMARK_OVERLAP_MS);
+            return ResponseWrapper.okWith("users", delta);
+        } catch (Exception e) { return ResponseWrapper.error(e.getMessage()); }
+    }
+
+    public ResponseWrapper queryUsers(String search, String status, String role, String sortKey,
+                                                   boolean descending, String cursor, int pageSize) {
+        try {
+            // One extra row tells whether there is a next page
+            List<User> rows = db.queryUsers(search, status, role, sortKey, descending, cursor, pageSize + 1);
+            UserPage page = new UserPage();
+            page.users = rows.size() > pageSize ? rows.subList(0, pageSize) : rows;
+            // Counting every match is the costly part, so only the first page does it
+            page.total = cursor == null || cursor.isEmpty() ? db.countUsers(search, status, role) : -1;
+            page.nextCursor = rows.size() > pageSize
+                    ? MySQLDatabase.userCursor(page.users.get(pageSize - 1), sortKey) : null;
+            return ResponseWrapper.okWith("users", page);
+        } catch (Exception e) { return ResponseWrapper.error(e.getMessage()); }
+    }
+
+    public ResponseWrapper createUser(String username, String password, String fullName, String email, String avatar, String role) {
+        Lock lock = accountLock(username);
+        lock.lock();
         try {
             if (db.findByUsername(username).isPresent()) return ResponseWrapper.error("Username existed");
             User u = new User();
@@ -109,54 +197,51 @@ public class AuthService {
             u.setRole(role==null?"USER":role);
             u.setStatus("ACTIVE");
             db.addUser(u);
-            db.addAudit(createAudit(null, "ADMIN_CREATE_USER", "Created " + username));
+            logs.addAudit(createAudit(null, "ADMIN_CREATE_USER", "Created " + username));
             return ResponseWrapper.ok("Tạo user thành công");
-        } catch (Exception e) { return ResponseWrapper.error(e.getMessage()); }
+        } catch (Exception e) { return ResponseWrapper.error(e.getMessage()); } finally { lock.unlock(); }
     }
 
-    public synchronized ResponseWrapper setUserStatus(int id, String status) {
+    public ResponseWrapper setUserStatus(int id, String status) {
         try {
-            Optional<User> ou = db.findById(id);
-            if (!ou.isPresent()) return ResponseWrapper.error("User not found");
-            User u = ou.get();
-            u.setStatus(status);
-            db.updateUser(u);
-            db.addAudit(createAudit(u.getId(), "ADMIN_SET_STATUS", "Status -> " + status));
-            return ResponseWrapper.ok("Đã đổi trạng thái");
+            return updateAccount(id, "User not found", u -> {
+                u.setStatus(status);
+                db.updateUser(u);
+                logs.addAudit(createAudit(u.getId(), "ADMIN_SET_STATUS", "Status -> " + status));
+                return ResponseWrapper.ok("Đã đổi trạng thái");
+            });
         } catch (Exception e) { return ResponseWrapper.error(e.getMessage()); }
     }
 
-    public synchronized ResponseWrapper editUser(int id, String fullName, String email, String avatar, String role, String password) {
+    public ResponseWrapper editUser(int id, String fullName, String email, String avatar, String role, String password) {
         try {
-            Optional<User> ou = db.findById(id);
-            if (!ou.isPresent()) return ResponseWrapper.error("User not found");
-            User u = ou.get();
+            return updateAccount(id, "User not found", u -> {
+                // Update fields if provided
+                if (fullName != null && !fullName.trim().isEmpty()) {
+                    u.setFullName(fullName);
+                }
+                if (email != null && !email.trim().isEmpty()) {
+                    u.setEmail(email);
+                }
+                if (avatar != null) {
+                    u.setAvatar(avatar.trim().isEmpty() ? null : avatar);
+                }
+                if (role != null && !role.trim().isEmpty()) {
+                    u.setRole(role);
+                }
+                if (password != null && !password.trim().isEmpty()) {
+                    u.setPasswordHash(Utils.sha256(password));
+                }
             
-            // Update fields if provided
-            if (fullName != null && !fullName.trim().isEmpty()) {
-                u.setFullName(fullName);
-            }
-            if (email != null && !email.trim().isEmpty()) {
-                u.setEmail(email);
-            }
-            if (avatar != null) {
-                u.setAvatar(avatar.trim().isEmpty() ? null : avatar);
-            }
-            if (role != null && !role.trim().isEmpty()) {
-                u.setRole(role);
-            }
-            if (password != null && !password.trim().isEmpty()) {
-                u.setPasswordHash(Utils.sha256(password));
-            }
-            
-            u.setUpdatedAt(Utils.now());
-            db.updateUser(u);
-            db.addAudit(createAudit(u.getId(), "ADMIN_EDIT_USER", "User information updated"));
-            return ResponseWrapper.ok("Cập nhật user thành công");
+                u.setUpdatedAt(Utils.now());
+                db.updateUser(u);
+                logs.addAudit(createAudit(u.getId(), "ADMIN_EDIT_USER", "User information updated"));
+                return ResponseWrapper.ok("Cập nhật user thành công");
+            });
         } catch (Exception e) { return ResponseWrapper.error(e.getMessage()); }
     }
 
-    public synchronized ResponseWrapper getUserById(int id) {
+    public ResponseWrapper getUserById(int id) {
         try {
             Optional<User> ou = db.findById(id);
             if (!ou.isPresent()) {
@@ -166,53 +251,45 @@ public class AuthService {
         } catch (Exception e) { return ResponseWrapper.error(e.getMessage()); }
     }
 
-    public synchronized ResponseWrapper changePassword(int userId, String oldPassword, String newPassword) {
+    public ResponseWrapper changePassword(int userId, String oldPassword, String newPassword) {
         try {
-            Optional<User> ou = db.findById(userId);
-            if (!ou.isPresent()) {
-                return ResponseWrapper.error("User không tồn tại");
-            }
-            
-            User user = ou.get();
-            String oldHashed = Utils.sha256(oldPassword);
+            return updateAccount(userId, "User không tồn tại", user -> {
+                String oldHashed = Utils.sha256(oldPassword);
             
-            // Verify old password
-            if (!oldHashed.equals(user.getPasswordHash())) {
-                db.addAudit(createAudit(userId, "CHANGE_PASSWORD_FAILED", "Wrong old password"));
-                return ResponseWrapper.error("Mật khẩu cũ không đúng");
-            }
+                // Verify old password
+                if (!oldHashed.equals(user.getPasswordHash())) {
+                    logs.addAudit(createAudit(userId, "CHANGE_PASSWORD_FAILED", "Wrong old password"));
+                    return ResponseWrapper.error("Mật khẩu cũ không đúng");
+                }
             
-            // Update to new password
-            String newHashed = Utils.sha256(newPassword);
-            user.setPasswordHash(newHashed);
-            user.setUpdatedAt(Utils.now());
-            db.updateUser(user);
+                // Update to new password
+                String newHashed = Utils.sha256(newPassword);
+                user.setPasswordHash(newHashed);
+                user.setUpdatedAt(Utils.now());
+                db.updateUser(user);
             
-            db.addAudit(createAudit(userId, "CHANGE_PASSWORD_SUCCESS", "Password changed successfully"));
-            return ResponseWrapper.ok("Đổi mật khẩu thành công");
+                logs.addAudit(createAudit(userId, "CHANGE_PASSWORD_SUCCESS", "Password changed successfully"));
+                return ResponseWrapper.ok("Đổi mật khẩu thành công");
+            });
         } catch (Exception e) { 
             return ResponseWrapper.error("Lỗi server: " + e.getMessage()); 
         }
     }
 
-    public synchronized ResponseWrapper updateProfile(int userId, String fullName, String email, String avatar) {
+    public ResponseWrapper updateProfile(int userId, String fullName, String email, String avatar) {
         try {
-            Optional<User> ou = db.findById(userId);
-            if (!ou.isPresent()) {
-                return ResponseWrapper.error("User không tồn tại");
-            }
+            return updateAccount(userId, "User không tồn tại", user -> {
+                user.setFullName(fullName);
+                user.setEmail(email);
+                if (avatar != null) {
+                    user.setAvatar(avatar.trim().isEmpty() ? null : avatar);
+                }
+                user.setUpdatedAt(Utils.now());
+                db.updateUser(user);
             
-            User user = ou.get();
-            user.setFullName(fullName);
-            user.setEmail(email);
-            if (avatar != null) {
-                user.setAvatar(avatar.trim().isEmpty() ? null : avatar);
-            }
-            user.setUpdatedAt(Utils.now());
-            db.updateUser(user);
-            
-            db.addAudit(createAudit(userId, "UPDATE_PROFILE", "Profile updated: " + fullName + ", " + email + ", avatar: " + avatar));
-            return ResponseWrapper.okWith("user", user);
+                logs.addAudit(createAudit(userId, "UPDATE_PROFILE", "Profile updated: " + fullName + ", " + email + ", avatar: " + avatar));
+                return ResponseWrapper.okWith("user", user);
+            });
         } catch (Exception e) { 
             return ResponseWrapper.error("Lỗi server: " + e.getMessage()); 
         }
@@ -226,6 +303,18 @@ public class AuthService {
         public static AuthResult fail(String m) { AuthResult r = new AuthResult(); r.ok=false; r.msg=m; return r; }
     }
 
+    public static class UserDelta {
+        public List<User> users;
+        public int total;
+        public Timestamp watermark;
+    }
+
+    public static class UserPage {
+        public List<User> users;
+        public int total; // -1 after the first page
+        public String nextCursor; // null on the last page
+    }
+
     public static class ResponseWrapper {
         public boolean ok;
         public String msg;
@@ -4,15 +4,45 @@ import com.myapp.common.*;
 
 import java.io.*;
 import java.net.Socket;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ClientHandler implements Runnable {
+    // Max correlated requests of one connection processed at the same time
+    private static final int MAX_IN_FLIGHT = 16;
+    // Rows per chunk of a streamed export, read from the database in one query
+    private static final int STREAM_CHUNK_ROWS = 500;
+    // Largest page of a keyset-paged history request
+    private static final int MAX_PAGE_ROWS = 500;
+    // Actions with no side effects; inside a BATCH these run concurrently, anything else runs alone in order
+    private static final Set<String> READ_ONLY_ACTIONS = new HashSet<>(Arrays.asList(
+            "GET_PROFILE", "ADMIN_LIST_USERS", "ADMIN_QUERY_USERS", "ADMIN_GET_USER", "GET_AUDITS",
+            "GET_USER_HISTORY", "GET_ONLINE_USERS", "GET_ALL_LOGIN_LOGS", "PING"));
+
     private Socket socket;
     private MySQLDatabase db;
     private AuthService auth;
-    private Integer currentUserId; // Track current logged user
+    private volatile Integer currentUserId; // Track current logged user
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    private volatile ResponseSink out; // set by the transport once the connection is negotiated
+    private volatile Runnable releaseListener; // NIO: told whenever an in-flight request finishes
+
+    // Where a transport writes the answer to one request
+    interface ResponseSink {
+        void send(Response resp) throws IOException;
+    }
 
     public ClientHandler(Socket socket, MySQLDatabase db, AuthService auth) {
         this.socket = socket;
@@ -21,24 +51,32 @@ public class ClientHandler implements Runnable {
         this.currentUserId = null;
     }
 
+    // Used by the NIO transport: the socket is owned by the event loop, not by this handler
+    public ClientHandler(MySQLDatabase db, AuthService auth) {
+        this(null, db, auth);
+    }
+
     @Override
     public void run() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
-             ObjectInputStream ois = new ObjectInputStream(socket.getInputStream())) {
+        try (MessageStream stream = WireProtocol.accept(new BufferedInputStream(socket.getInputStream()),
+                new BufferedOutputStream(socket.getOutputStream()))) {
 
+            // A lock rather than synchronized: a virtual thread blocked in a socket write
+            // inside a monitor would pin its carrier thread
+            ReentrantLock writeLock = new ReentrantLock();
+            setResponseSink(resp -> {
+                writeLock.lock();
+                try {
+                    stream.write(resp);
+                } finally {
+                    writeLock.unlock();
+                }
+            });
+            String ip = socket.getInetAddress().getHostAddress();
             Object o;
-            while ((o = ois.readObject()) != null) {
+            while ((o = stream.read()) != null) {
                 if (!(o instanceof Request)) break;
-                Request req = (Request)o;
-                
-                // Update activity if user is logged in
-                if (currentUserId != null) {
-                    ServerMain.updateUserActivity(currentUserId);
-                }
-                
-                Response resp = handle(req, socket.getInetAddress().getHostAddress());
-                oos.writeObject(resp);
-                oos.flush();
+                dispatch((Request)o, ip, ServerMain.getRequestExecutor());
             }
         } catch (EOFException eof) {
             // client closed connection - this is normal
@@ -53,16 +91,126 @@ public class ClientHandler implements Runnable {
             System.out.println("Connection error: " + e.getMessage());
             e.printStackTrace();
         } finally {
-            // Remove user from online list when disconnecting
-            if (currentUserId != null) {
-                ServerMain.removeOnlineUser(currentUserId);
-            }
+            onDisconnect();
             try {
                 socket.close();
             } catch (Exception ignored) {}
         }
     }
 
+    /**
+     * Requests carrying a correlation id run concurrently on the executor and may be
+     * answered out of order. Legacy requests (id 0) and LOGIN, which changes the
+     * session, act as barriers: they wait for everything in flight and run inline.
+     */
+    void dispatch(Request req, String ip, Executor executor) throws IOException, InterruptedException {
+        int permits = permitsFor(req, executor);
+        inFlight.acquire(permits);
+        start(req, ip, executor, permits);
+    }
+
+    /**
+     * Same as dispatch, for the NIO transport whose worker threads must never wait: returns
+     * false without running the request when its in-flight slots are taken. The release
+     * listener hears about every request that finishes, so the caller knows when to retry.
+     */
+    boolean tryDispatch(Request req, String ip, Executor executor) throws IOException {
+        int permits = permitsFor(req, executor);
+        if (!inFlight.tryAcquire(permits)) return false;
+        start(req, ip, executor, permits);
+        return true;
+    }
+
+    // Whether tryDispatch would get its slots right now
+    boolean canDispatch(Request req, Executor executor) {
+        return inFlight.availablePermits() >= permitsFor(req, executor);
+    }
+
+    void setReleaseListener(Runnable releaseListener) {
+        this.releaseListener = releaseListener;
+    }
+
+    private int permitsFor(Request req, Executor executor) {
+        return executor == null || req.getCorrelationId() == 0 || changesSession(req) ? MAX_IN_FLIGHT : 1;
+    }
+
+    // Runs a request that holds its slots: a barrier inline, anything else on the executor
+    private void start(Request req, String ip, Executor executor, int permits) throws IOException {
+        if (permits == MAX_IN_FLIGHT) {
+            try {
+                out.send(process(req, ip));
+            } finally {
+                release(permits);
+            }
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    out.send(process(req, ip));
+                } catch (IOException e) {
+                    System.out.println("Client connection lost: " + e.getMessage());
+                } finally {
+                    release(1);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            try {
+                out.send(process(req, ip));
+            } finally {
+                release(1);
+            }
+        }
+    }
+
+    private void release(int permits) {
+        inFlight.release(permits);
+        Runnable listener = releaseListener;
+        if (listener != null) listener.run();
+    }
+
+    private static boolean changesSession(Request req) {
+        if ("LOGIN".equals(req.getAction())) return true;
+        if (!Batch.ACTION.equals(req.getAction())) return false;
+        for (Map.Entry<String, String> e : req.getData().entrySet()) {
+            if (e.getKey().endsWith(".@action") && "LOGIN".equals(e.getValue())) return true;
+        }
+        return false;
+    }
+
+    Response process(Request req, String ip) {
+        // Update activity if user is logged in
+        if (currentUserId != null) {
+            ServerMain.updateUserActivity(currentUserId);
+        }
+        Response resp = handle(req, ip);
+        resp.setCorrelationId(req.getCorrelationId());
+        return resp;
+    }
+
+    void setResponseSink(ResponseSink out) {
+        this.out = out;
+    }
+
+    // Delivers a server-initiated message; returns false if the connection is gone
+    boolean push(Response event) {
+        try {
+            out.send(event);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    void onDisconnect() {
+        ServerMain.unsubscribePresence(this);
+        // Remove user from online list when disconnecting
+        if (currentUserId != null) {
+            ServerMain.removeOnlineUser(currentUserId);
+        }
+    }
+
     private Response handle(Request req, String ip) {
         try {
             String a = req.getAction();
@@ -107,42 +255,56 @@ public class ClientHandler implements Runnable {
                     } catch (NumberFormatException ex) { return new Response(false,"Invalid id"); }
                 }
                 case "ADMIN_LIST_USERS": {
-                    AuthService.ResponseWrapper rw = auth.listUsers();
+                    // With "since" only users changed after that watermark are returned
+                    java.sql.Timestamp since = null;
+                    String sinceStr = d.get("since");
+                    if (sinceStr != null && !sinceStr.trim().isEmpty()) {
+                        try {
+                            since = java.sql.Timestamp.valueOf(sinceStr.trim());
+                        } catch (IllegalArgumentException ex) {
+                            return new Response(false, "Invalid since");
+                        }
+                    }
+                    AuthService.ResponseWrapper rw = auth.listUsersChangedSince(since);
                     if (!rw.ok) return new Response(false, rw.msg);
                     Response r = new Response(true, "OK");
+                    AuthService.UserDelta delta = (AuthService.UserDelta) rw.payload;
                     // put minimal user list in response data as CSV-ish with online status
-                    @SuppressWarnings("unchecked")
-                    List<User> users = (List<User>) rw.payload;
                     StringBuilder sb = new StringBuilder();
-                    for (User u: users) {
-                        String onlineStatus = ServerMain.isUserOnline(u.getId()) ? "ONLINE" : "OFFLINE";
-                        String lastLogin = (u.getLastLogin() != null) ? u.getLastLogin() : "Chưa đăng nhập";
-                        String fullName = (u.getFullName() != null) ? u.getFullName() : "";
-                        String email = (u.getEmail() != null) ? u.getEmail() : "";
-                        String avatar = (u.getAvatar() != null) ? u.getAvatar() : "";
-                        String createdAt = (u.getCreatedAt() != null) ? u.getCreatedAt() : "";
-                        
-                        // Debug output
-                        System.out.println("Sending user data: ID=" + u.getId() + 
-                            ", Username=" + u.getUsername() + 
-                            ", FullName=" + fullName + 
-                            ", Email=" + email + 
-                            ", Role=" + u.getRole() + 
-                            ", Status=" + u.getStatus() + 
-                            ", Online=" + onlineStatus);
-                        
-                        sb.append(u.getId()).append(",")
-                          .append(u.getUsername()).append(",")
-                          .append(fullName).append(",")
-                          .append(email).append(",")
-                          .append(avatar).append(",")
-                          .append(u.getRole()).append(",")
-                          .append(u.getStatus()).append(",")
-                          .append(onlineStatus).append(",")
-                          .append(lastLogin).append(",")
-                          .append(createdAt).append(";");
+                    for (User u: delta.users) {
+                        appendUserRow(sb, u);
                     }
                     r.put("users", sb.toString());
+                    r.put("delta", String.valueOf(since != null));
+                    r.put("total", String.valueOf(delta.total));
+                    r.put("watermark", delta.watermark.toString());
+                    if (since != null) {
+                        // Online flags of unchanged rows may still have flipped
+                        r.put("onlineUserIds", joinIds(ServerMain.getOnlineUserIds()));
+                    }
+                    return r;
+                }
+                case "ADMIN_QUERY_USERS": {
+                    // Filtered, sorted page of users for the admin table
+                    int pageSize = 10;
+                    try {
+                        if (d.get("pageSize") != null) pageSize = Integer.parseInt(d.get("pageSize"));
+                    } catch (NumberFormatException ex) {
+                        return new Response(false, "Invalid pageSize");
+                    }
+                    pageSize = Math.max(1, Math.min(pageSize, 100));
+                    AuthService.ResponseWrapper rw = auth.queryUsers(d.get("search"), d.get("status"), d.get("role"),
+                            d.get("sort"), "desc".equalsIgnoreCase(d.get("order")), d.get("cursor"), pageSize);
+                    if (!rw.ok) return new Response(false, rw.msg);
+                    AuthService.UserPage page = (AuthService.UserPage) rw.payload;
+                    StringBuilder sb = new StringBuilder();
+                    for (User u : page.users) {
+                        appendUserRow(sb, u);
+                    }
+                    Response r = new Response(true, "OK");
+                    r.put("users", sb.toString());
+                    if (page.total >= 0) r.put("total", String.valueOf(page.total));
+                    r.put("nextCursor", page.nextCursor != null ? page.nextCursor : "");
                     return r;
                 }
                 case "ADMIN_CREATE_USER": {
@@ -212,29 +374,14 @@ public class ClientHandler implements Runnable {
                 }
                 case "GET_AUDITS": {
                     try {
-                        List<AuditLog> la = db.loadAudits();
-                        StringBuilder sb = new StringBuilder();
-                        for (AuditLog aLog : la) {
-                            String username = "System";
-                            if (aLog.getUserId() != null) {
-                                Optional<com.myapp.common.User> user = db.findById(aLog.getUserId());
-                                if (user.isPresent()) {
-                                    username = user.get().getUsername() + " (" + user.get().getRole() + ")";
-                                } else {
-                                    username = "User ID " + aLog.getUserId() + " (Deleted)";
-                                }
-                            }
-                            
-                            sb.append(aLog.getId()).append("|")
-                              .append(username).append("|")
-                              .append(aLog.getAction()).append("|")
-                              .append(aLog.getDetails()).append("|")
-                              .append(aLog.getCreatedAt()).append("\n");
-                        }
+                        if (isStreamed(req)) return streamAudits(req);
+                        if (d.get("pageSize") != null) return auditPage(HistoryPage.of(d));
                         Response rr = new Response(true, "OK");
-                        rr.put("audits", sb.toString());
+                        rr.put("audits", formatAudits(db.loadAudits()));
                         return rr;
-                    } catch (java.sql.SQLException e) {
+                    } catch (IllegalArgumentException e) {
+                        return new Response(false, e.getMessage());
+                    } catch (Exception e) {
                         return new Response(false, "Database error loading audits: " + e.getMessage());
                     }
                 }
@@ -278,39 +425,14 @@ public class ClientHandler implements Runnable {
                         }
                         
                         User user = userOpt.get();
-                        StringBuilder sb = new StringBuilder();
+                        if (d.get("pageSize") != null) return userHistoryPage(user.getId(), HistoryPage.of(d));
 
                         // Get audit logs for this user only (no login attempt API usage)
-                        List<AuditLog> audits = db.getAuditLogsByUserId(user.getId());
-                        for (AuditLog audit : audits) {
-                            String actionCode = audit.getAction();
-                            String actionDesc = actionCode;
-                            String resultDesc = "Thành công";
-
-                            if ("LOGIN_SUCCESS".equalsIgnoreCase(actionCode)) {
-                                actionDesc = "Đăng nhập thành công";
-                                resultDesc = "Thành công";
-                            } else if ("LOGIN_FAILED".equalsIgnoreCase(actionCode)) {
-                                actionDesc = "Đăng nhập thất bại";
-                                resultDesc = "Thất bại";
-                            } else if ("LOGOUT".equalsIgnoreCase(actionCode)) {
-                                actionDesc = "Đăng xuất";
-                            } else if ("PROFILE_UPDATE".equalsIgnoreCase(actionCode)) {
-                                actionDesc = "Cập nhật thông tin";
-                            } else if ("PASSWORD_CHANGE".equalsIgnoreCase(actionCode)) {
-                                actionDesc = "Đổi mật khẩu";
-                            }
-
-                            sb.append("AUDIT|")
-                              .append(audit.getCreatedAt()).append("|")
-                              .append(actionDesc).append("|")
-                              .append(audit.getDetails() != null ? audit.getDetails() : "").append("|")
-                              .append(resultDesc).append("\n");
-                        }
-                        
                         Response r = new Response(true, "User history retrieved");
-                        r.put("history", sb.toString());
+                        r.put("history", formatHistory(db.getAuditLogsByUserId(user.getId())));
                         return r;
+                    } catch (IllegalArgumentException e) {
+                        return new Response(false, e.getMessage());
                     } catch (Exception e) {
                         return new Response(false, "Database error: " + e.getMessage());
                     }
@@ -327,34 +449,49 @@ public class ClientHandler implements Runnable {
                     r.put("onlineUserIds", sb.toString());
                     return r;
                 }
+                case "SUBSCRIBE_PRESENCE": {
+                    // Register first so no change between the snapshot and the subscription is lost
+                    ServerMain.subscribePresence(this);
+                    Response r = new Response(true, "OK");
+                    r.put("onlineUserIds", joinIds(ServerMain.getOnlineUserIds()));
+                    return r;
+                }
+                case "UNSUBSCRIBE_PRESENCE": {
+                    ServerMain.unsubscribePresence(this);
+                    return new Response(true, "OK");
+                }
                 case "GET_ALL_LOGIN_LOGS": {
                     try {
+                        if (isStreamed(req)) return streamLoginLogs(req);
+                        if (d.get("pageSize") != null) return loginLogPage(HistoryPage.of(d));
                         // Get all login attempts from database
-                        List<LoginAttempt> allAttempts = db.getAllLoginAttempts();
-                        StringBuilder sb = new StringBuilder();
-                        
-                        for (LoginAttempt attempt : allAttempts) {
-                            sb.append("LOGIN_ATTEMPT|")
-                              .append(attempt.getAttemptTime()).append("|")
-                              .append(attempt.getUsername()).append("|")
-                              .append(attempt.isSuccess() ? "Đăng nhập thành công" : "Đăng nhập thất bại").append("|")
-                              .append(attempt.getIp() != null ? attempt.getIp() : "N/A").append("|")
-                              .append(attempt.isSuccess() ? "Thành công" : "Thất bại").append("\n");
-                        }
-                        
                         Response r = new Response(true, "Login logs retrieved");
-                        r.put("loginLogs", sb.toString());
+                        r.put("loginLogs", formatLoginAttempts(db.getAllLoginAttempts()));
                         return r;
+                    } catch (IllegalArgumentException e) {
+                        return new Response(false, e.getMessage());
                     } catch (Exception e) {
                         return new Response(false, "Database error: " + e.getMessage());
                     }
                 }
+                case Batch.ACTION: {
+                    List<Request> parts;
+                    try {
+                        parts = Batch.unpackRequests(req);
+                    } catch (IllegalArgumentException e) {
+                        return new Response(false, e.getMessage());
+                    }
+                    return Batch.packResponses(runBatch(parts, ip));
+                }
                 case "PING": {
                     // Simple ping to keep connection alive and update activity
                     if (currentUserId != null) {
                         ServerMain.updateUserActivity(currentUserId);
                     }
-                    return new Response(true, "PONG");
+                    Response r = new Response(true, "PONG");
+                    // Lets a subscribed client notice that it was dropped and subscribe again
+                    r.put("presence", String.valueOf(ServerMain.isPresenceSubscribed(this)));
+                    return r;
                 }
                 default:
                     return new Response(false, "Unknown action: " + a);
@@ -364,4 +501,281 @@ public class ClientHandler implements Runnable {
             return new Response(false, "Server error: " + e.getMessage());
         }
     }
+
+    /**
+     * Runs the parts of a BATCH and returns their answers in the same order. Consecutive
+     * read-only parts run concurrently; any other part waits for those before it and
+     * finishes before the next one starts. A failing part only fails its own answer.
+     */
+    private List<Response> runBatch(List<Request> parts, String ip) throws InterruptedException {
+        Response[] answers = new Response[parts.size()];
+        try (TaskScope scope = new TaskScope(ServerMain.getRequestExecutor())) {
+            Map<Integer, Future<Response>> running = new HashMap<>();
+            for (int i = 0; i < parts.size(); i++) {
+                Request part = parts.get(i);
+                if (part.getAction() == null || Batch.ACTION.equals(part.getAction())) {
+                    answers[i] = new Response(false, "Invalid batch part: " + part.getAction());
+                } else if (READ_ONLY_ACTIONS.contains(part.getAction())) {
+                    running.put(i, scope.fork(() -> handle(part, ip)));
+                } else {
+                    collect(running, answers);
+                    answers[i] = handle(part, ip);
+                }
+            }
+            collect(running, answers);
+        }
+        return Arrays.asList(answers);
+    }
+
+    private static void collect(Map<Integer, Future<Response>> running, Response[] answers) throws InterruptedException {
+        for (Map.Entry<Integer, Future<Response>> e : running.entrySet()) {
+            try {
+                answers[e.getKey()] = e.getValue().get();
+            } catch (ExecutionException ex) {
+                answers[e.getKey()] = new Response(false, "Server error: " + ex.getCause());
+            }
+        }
+        running.clear();
+    }
+
+    // Streaming needs a correlation id: a legacy client matches answers to requests one to one
+    static boolean isStreamed(Request req) {
+        return req.getCorrelationId() != 0 && "true".equals(req.getData().get("stream"));
+    }
+
+    /**
+     * Streamed export: the table is read one chunk at a time and every chunk is sent as soon as
+     * it is formatted, under the request's correlation id and with "more"=true. The returned
+     * response is the final chunk. Only one chunk is held at a time, whatever the table size.
+     */
+    private Response streamAudits(Request req) throws Exception {
+        Timestamp beforeTime = null;
+        int beforeId = 0;
+        int total = 0;
+        while (true) {
+            List<AuditLog> chunk = db.loadAuditsBefore(beforeTime, beforeId, STREAM_CHUNK_ROWS);
+            total += chunk.size();
+            Response r = new Response(true, "OK");
+            r.put("audits", formatAudits(chunk));
+            if (chunk.size() < STREAM_CHUNK_ROWS) {
+                r.put("total", String.valueOf(total));
+                return r;
+            }
+            sendChunk(req, r);
+            AuditLog last = chunk.get(chunk.size() - 1);
+            beforeTime = Timestamp.valueOf(last.getCreatedAt());
+            beforeId = last.getId();
+        }
+    }
+
+    private Response streamLoginLogs(Request req) throws Exception {
+        Timestamp beforeTime = null;
+        int beforeId = 0;
+        int total = 0;
+        while (true) {
+            List<LoginAttempt> chunk = db.getLoginAttemptsBefore(beforeTime, beforeId, STREAM_CHUNK_ROWS);
+            total += chunk.size();
+            Response r = new Response(true, "Login logs retrieved");
+            r.put("loginLogs", formatLoginAttempts(chunk));
+            if (chunk.size() < STREAM_CHUNK_ROWS) {
+                r.put("total", String.valueOf(total));
+                return r;
+            }
+            sendChunk(req, r);
+            LoginAttempt last = chunk.get(chunk.size() - 1);
+            beforeTime = Timestamp.valueOf(last.getAttemptTime());
+            beforeId = last.getId();
+        }
+    }
+
+    /**
+     * Keyset page of a history list, newest first: "pageSize" rows (at most MAX_PAGE_ROWS)
+     * before "cursor", which is the "id|time" nextCursor of the previous page (none for the
+     * first page). Each page is one indexed range query, so page 1000 costs what page 1 does.
+     */
+    private static final class HistoryPage {
+        final int size;
+        final Timestamp beforeTime;
+        final int beforeId;
+
+        private HistoryPage(int size, Timestamp beforeTime, int beforeId) {
+            this.size = size;
+            this.beforeTime = beforeTime;
+            this.beforeId = beforeId;
+        }
+
+        static HistoryPage of(Map<String, String> d) {
+            int size;
+            try {
+                size = Integer.parseInt(d.get("pageSize"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid pageSize");
+            }
+            size = Math.max(1, Math.min(size, MAX_PAGE_ROWS));
+            String cursor = d.get("cursor");
+            if (cursor == null || cursor.isEmpty()) return new HistoryPage(size, null, 0);
+            try {
+                String[] parts = cursor.split("\\|", 2);
+                return new HistoryPage(size, Timestamp.valueOf(parts[1]), Integer.parseInt(parts[0]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        // One row more than the page is read to tell whether another page follows
+        int fetchSize() {
+            return size + 1;
+        }
+
+        <T> List<T> trim(List<T> rows) {
+            return rows.size() > size ? rows.subList(0, size) : rows;
+        }
+
+        // lastTime is Timestamp.toString() of the row's getTimestamp(), which valueOf() in of()
+        // turns back into the same instant; the driver's raw string would be in the server's zone
+        String nextCursor(List<?> rows, int lastId, String lastTime) {
+            return rows.size() > size ? lastId + "|" + lastTime : "";
+        }
+    }
+
+    private Response auditPage(HistoryPage page) throws Exception {
+        List<AuditLog> rows = db.loadAuditsBefore(page.beforeTime, page.beforeId, page.fetchSize());
+        List<AuditLog> shown = page.trim(rows);
+        AuditLog last = shown.isEmpty() ? null : shown.get(shown.size() - 1);
+        Response r = new Response(true, "OK");
+        r.put("audits", formatAudits(shown));
+        r.put("nextCursor", last == null ? "" : page.nextCursor(rows, last.getId(), last.getCreatedAt()));
+        return r;
+    }
+
+    private Response loginLogPage(HistoryPage page) throws Exception {
+        List<LoginAttempt> rows = db.getLoginAttemptsBefore(page.beforeTime, page.beforeId, page.fetchSize());
+        List<LoginAttempt> shown = page.trim(rows);
+        LoginAttempt last = shown.isEmpty() ? null : shown.get(shown.size() - 1);
+        Response r = new Response(true, "Login logs retrieved");
+        r.put("loginLogs", formatLoginAttempts(shown));
+        r.put("nextCursor", last == null ? "" : page.nextCursor(rows, last.getId(), last.getAttemptTime()));
+        return r;
+    }
+
+    private Response userHistoryPage(int userId, HistoryPage page) throws Exception {
+        List<AuditLog> rows = db.getAuditLogsByUserIdBefore(userId, page.beforeTime, page.beforeId, page.fetchSize());
+        List<AuditLog> shown = page.trim(rows);
+        AuditLog last = shown.isEmpty() ? null : shown.get(shown.size() - 1);
+        Response r = new Response(true, "User history retrieved");
+        r.put("history", formatHistory(shown));
+        r.put("nextCursor", last == null ? "" : page.nextCursor(rows, last.getId(), last.getCreatedAt()));
+        return r;
+    }
+
+    private void sendChunk(Request req, Response chunk) throws IOException {
+        chunk.put("more", "true");
+        chunk.setCorrelationId(req.getCorrelationId());
+        out.send(chunk);
+    }
+
+    // Server format for audits: id | username | action | details | createdAt
+    private static String formatAudits(List<AuditLog> la) {
+        StringBuilder sb = new StringBuilder();
+        for (AuditLog aLog : la) {
+            // User data comes joined with the audit rows, no lookup per row
+            String username = "System";
+            if (aLog.getUserId() != null) {
+                if (aLog.getUsername() != null) {
+                    username = aLog.getUsername() + " (" + aLog.getUserRole() + ")";
+                } else {
+                    username = "User ID " + aLog.getUserId() + " (Deleted)";
+                }
+            }
+
+            sb.append(aLog.getId()).append("|")
+              .append(username).append("|")
+              .append(aLog.getAction()).append("|")
+              .append(aLog.getDetails()).append("|")
+              .append(aLog.getCreatedAt()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    // User history rows: AUDIT | createdAt | action | details | result
+    private static String formatHistory(List<AuditLog> audits) {
+        StringBuilder sb = new StringBuilder();
+        for (AuditLog audit : audits) {
+            String actionCode = audit.getAction();
+            String actionDesc = actionCode;
+            String resultDesc = "Thành công";
+
+            if ("LOGIN_SUCCESS".equalsIgnoreCase(actionCode)) {
+                actionDesc = "Đăng nhập thành công";
+                resultDesc = "Thành công";
+            } else if ("LOGIN_FAILED".equalsIgnoreCase(actionCode)) {
+                actionDesc = "Đăng nhập thất bại";
+                resultDesc = "Thất bại";
+            } else if ("LOGOUT".equalsIgnoreCase(actionCode)) {
+                actionDesc = "Đăng xuất";
+            } else if ("PROFILE_UPDATE".equalsIgnoreCase(actionCode)) {
+                actionDesc = "Cập nhật thông tin";
+            } else if ("PASSWORD_CHANGE".equalsIgnoreCase(actionCode)) {
+                actionDesc = "Đổi mật khẩu";
+            }
+
+            sb.append("AUDIT|")
+              .append(audit.getCreatedAt()).append("|")
+              .append(actionDesc).append("|")
+              .append(audit.getDetails() != null ? audit.getDetails() : "").append("|")
+              .append(resultDesc).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static String formatLoginAttempts(List<LoginAttempt> attempts) {
+        StringBuilder sb = new StringBuilder();
+        for (LoginAttempt attempt : attempts) {
+            sb.append("LOGIN_ATTEMPT|")
+              .append(attempt.getAttemptTime()).append("|")
+              .append(attempt.getUsername()).append("|")
+              .append(attempt.isSuccess() ? "Đăng nhập thành công" : "Đăng nhập thất bại").append("|")
+              .append(attempt.getIp() != null ? attempt.getIp() : "N/A").append("|")
+              .append(attempt.isSuccess() ? "Thành công" : "Thất bại").append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static void appendUserRow(StringBuilder sb, User u) {
+        String onlineStatus = ServerMain.isUserOnline(u.getId()) ? "ONLINE" : "OFFLINE";
+        String lastLogin = (u.getLastLogin() != null) ? u.getLastLogin() : "Chưa đăng nhập";
+        String fullName = (u.getFullName() != null) ? u.getFullName() : "";
+        String email = (u.getEmail() != null) ? u.getEmail() : "";
+        String avatar = (u.getAvatar() != null) ? u.getAvatar() : "";
+        String createdAt = (u.getCreatedAt() != null) ? u.getCreatedAt() : "";
+        
+        // Debug output
+        System.out.println("Sending user data: ID=" + u.getId() + 
+            ", Username=" + u.getUsername() + 
+            ", FullName=" + fullName + 
+            ", Email=" + email + 
+            ", Role=" + u.getRole() + 
+            ", Status=" + u.getStatus() + 
+            ", Online=" + onlineStatus);
+        
+        sb.append(u.getId()).append(",")
+          .append(u.getUsername()).append(",")
+          .append(fullName).append(",")
+          .append(email).append(",")
+          .append(avatar).append(",")
+          .append(u.getRole()).append(",")
+          .append(u.getStatus()).append(",")
+          .append(onlineStatus).append(",")
+          .append(lastLogin).append(",")
+          .append(createdAt).append(";");
+    }
+
+    private static String joinIds(java.util.Collection<Integer> ids) {
+        StringBuilder sb = new StringBuilder();
+        for (Integer id : ids) {
+            if (sb.length() > 0) sb.append(",");
+            sb.append(id);
+        }
+        return sb.toString();
+    }
 }
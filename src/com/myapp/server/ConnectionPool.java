@@ -0,0 +1,269 @@
+package com.myapp.server;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLSyntaxErrorException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Small JDBC connection pool. getConnection() hands out a wrapper whose close() returns
+ * the connection instead of closing it, so callers use the usual try-with-resources.
+ *
+ * Idle connections are reused most-recently-used first and re-validated when they sat
+ * unused for longer than VALIDATION_INTERVAL_MS; broken ones are replaced. A maintenance
+ * task closes connections idle past idleTimeoutMs (down to minSize) and, when
+ * leakThresholdMs is positive, reports connections borrowed for longer than that with the
+ * stack that took them; the stack is only captured when leak detection is on.
+ *
+ * A connection is closed on release instead of reused when one of its own calls failed
+ * with an SQLException that may have left it unusable, or when the driver closed it, as
+ * Connector/J does after a statement loses the server. Statements and result sets are the
+ * driver's own, unwrapped, so reading rows costs no reflective call per getter.
+ */
+class ConnectionPool implements AutoCloseable {
+    private static final long VALIDATION_INTERVAL_MS = 1000;
+    private static final int VALIDATION_TIMEOUT_S = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final long borrowTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long leakThresholdMs;
+
+    private final Semaphore permits; // one per connection that may be borrowed, maxSize in total
+    private final LinkedBlockingDeque<Pooled> idle = new LinkedBlockingDeque<>();
+    private final Set<Pooled> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "db-pool-maintenance");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder replaced = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+
+    private static final class Pooled {
+        final Connection raw;
+        volatile long lastUsed = System.currentTimeMillis();
+        volatile long borrowedAt;
+        volatile Throwable borrowSite;
+        volatile boolean leakReported;
+        volatile boolean broken;
+
+        Pooled(Connection raw) {
+            this.raw = raw;
+        }
+    }
+
+    ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                   long borrowTimeoutMs, long idleTimeoutMs, long leakThresholdMs) throws SQLException {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = Math.max(0, Math.min(minSize, maxSize));
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.leakThresholdMs = leakThresholdMs;
+        this.permits = new Semaphore(Math.max(1, maxSize), true);
+
+        for (int i = 0; i < this.minSize; i++) {
+            idle.addLast(new Pooled(open()));
+        }
+        maintenance.scheduleWithFixedDelay(this::maintain, 30, 30, TimeUnit.SECONDS);
+    }
+
+    Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLException("No database connection available within " + borrowTimeoutMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        borrows.increment();
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        try {
+            Pooled p = takeValid();
+            p.borrowedAt = System.currentTimeMillis();
+            if (leakThresholdMs > 0) {
+                p.borrowSite = new Throwable("Connection borrowed here");
+                p.leakReported = false;
+            }
+            borrowed.add(p);
+            return wrap(p);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Pooled takeValid() throws SQLException {
+        Pooled p;
+        while ((p = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - p.lastUsed < VALIDATION_INTERVAL_MS || isValid(p.raw)) {
+                return p;
+            }
+            replaced.increment();
+            closeQuietly(p.raw);
+        }
+        return new Pooled(open());
+    }
+
+    private void release(Pooled p) {
+        borrowed.remove(p);
+        p.borrowSite = null;
+        boolean reusable = false;
+        if (p.broken) {
+            replaced.increment();
+        } else {
+            try {
+                if (!p.raw.getAutoCommit()) {
+                    p.raw.rollback();
+                    p.raw.setAutoCommit(true);
+                }
+                reusable = !p.raw.isClosed();
+            } catch (SQLException e) {
+                reusable = false;
+            }
+        }
+        if (reusable) {
+            p.lastUsed = System.currentTimeMillis();
+            idle.addFirst(p);
+        } else {
+            closeQuietly(p.raw);
+        }
+        permits.release();
+    }
+
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        // Oldest idle connections sit at the tail
+        Iterator<Pooled> it = idle.descendingIterator();
+        while (it.hasNext() && idle.size() + borrowed.size() > minSize) {
+            Pooled p = it.next();
+            if (now - p.lastUsed > idleTimeoutMs && idle.remove(p)) {
+                closeQuietly(p.raw);
+            }
+        }
+        if (leakThresholdMs > 0) {
+            for (Pooled p : borrowed) {
+                if (!p.leakReported && now - p.borrowedAt > leakThresholdMs) {
+                    p.leakReported = true;
+                    System.err.println("Possible connection leak: borrowed " + (now - p.borrowedAt) + " ms ago");
+                    if (p.borrowSite != null) p.borrowSite.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // Each borrow gets its own wrapper, so a reference kept after close() cannot reach the connection.
+    // No monitor here: a virtual thread blocked on the database inside one would pin its carrier.
+    private Connection wrap(Pooled p) {
+        AtomicBoolean returned = new AtomicBoolean();
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) release(p);
+                    return null;
+                case "isClosed":
+                    return returned.get() || p.raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + p.raw;
+                case "prepareStatement":
+                case "prepareCall":
+                case "createStatement":
+                    statements.increment();
+                    break;
+            }
+            if (returned.get()) throw new SQLException("Connection already returned to the pool");
+            try {
+                return method.invoke(p.raw, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException && mayBreakConnection((SQLException) cause)) p.broken = true;
+                throw cause;
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, handler);
+    }
+
+    // A rejected statement or value says nothing about the connection; anything else might
+    private static boolean mayBreakConnection(SQLException e) {
+        return !(e instanceof SQLIntegrityConstraintViolationException
+                || e instanceof SQLDataException
+                || e instanceof SQLSyntaxErrorException);
+    }
+
+    private Connection open() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    private static boolean isValid(Connection c) {
+        try {
+            return c.isValid(VALIDATION_TIMEOUT_S);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    // Statements created through pooled connections since startup
+    long statementCount() {
+        return statements.sum();
+    }
+
+    String summary() {
+        long n = borrows.sum();
+        return String.format("db pool: %d open (%d idle, %d in use), %d borrows, avg wait %.2f ms, max wait %.2f ms, %d timeouts, %d replaced, %d statements",
+                idle.size() + borrowed.size(), idle.size(), borrowed.size(), n,
+                n == 0 ? 0.0 : waitNanos.sum() / 1e6 / n, maxWaitNanos.get() / 1e6, timeouts.sum(), replaced.sum(), statements.sum());
+    }
+
+    @Override
+    public void close() {
+        maintenance.shutdownNow();
+        Pooled p;
+        while ((p = idle.pollFirst()) != null) {
+            closeQuietly(p.raw);
+        }
+    }
+}
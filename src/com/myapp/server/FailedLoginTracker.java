@@ -0,0 +1,87 @@
+package com.myapp.server;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Consecutive failed logins per account within a sliding window, kept in memory so the
+ * lockout decision needs no database query. The map is bounded: the least recently
+ * touched accounts are evicted first, and an account under attack is touched on every
+ * attempt, so it stays. Each account keeps at most maxPerAccount timestamps.
+ */
+class FailedLoginTracker {
+    private final long windowMs;
+    private final int maxPerAccount;
+    private final Map<String, ArrayDeque<Long>> failures;
+
+    FailedLoginTracker(long windowMs, int maxPerAccount, int maxAccounts) {
+        this.windowMs = windowMs;
+        this.maxPerAccount = maxPerAccount;
+        this.failures = new LinkedHashMap<String, ArrayDeque<Long>>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ArrayDeque<Long>> eldest) {
+                return size() > maxAccounts;
+            }
+        };
+    }
+
+    // Records a failure and returns the number of failures in the window, this one included
+    synchronized int recordFailure(String username) {
+        return add(key(username), System.currentTimeMillis());
+    }
+
+    synchronized int count(String username) {
+        ArrayDeque<Long> times = failures.get(key(username));
+        if (times == null) return 0;
+        prune(times, System.currentTimeMillis());
+        return times.size();
+    }
+
+    synchronized void reset(String username) {
+        failures.remove(key(username));
+    }
+
+    // Restores failures read from login_attempts, given as how long ago each happened (oldest first)
+    synchronized void load(Map<String, List<Long>> agesMsByUsername) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, List<Long>> e : agesMsByUsername.entrySet()) {
+            for (Long age : e.getValue()) {
+                add(key(e.getKey()), now - age);
+            }
+        }
+    }
+
+    synchronized int size() {
+        return failures.size();
+    }
+
+    private int add(String key, long time) {
+        ArrayDeque<Long> times = failures.computeIfAbsent(key, k -> new ArrayDeque<>());
+        prune(times, System.currentTimeMillis());
+        if (times.size() >= maxPerAccount) times.pollFirst();
+        times.addLast(time);
+        // Sweep a few idle accounts so expired entries do not wait for LRU eviction
+        Iterator<Map.Entry<String, ArrayDeque<Long>>> it = failures.entrySet().iterator();
+        for (int i = 0; i < 2 && it.hasNext(); i++) {
+            ArrayDeque<Long> idle = it.next().getValue();
+            prune(idle, System.currentTimeMillis());
+            if (idle.isEmpty()) it.remove();
+        }
+        return times.size();
+    }
+
+    private void prune(ArrayDeque<Long> times, long now) {
+        while (!times.isEmpty() && now - times.peekFirst() >= windowMs) {
+            times.pollFirst();
+        }
+    }
+
+    // Usernames compare case-insensitively in MySQL
+    private static String key(String username) {
+        return username == null ? "" : username.toLowerCase(Locale.ROOT);
+    }
+}
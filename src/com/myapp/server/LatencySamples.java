@@ -0,0 +1,31 @@
+package com.myapp.server;
+
+import java.util.Arrays;
+
+/**
+ * The most recent latencies of one operation in a fixed ring, for a p50/p99 line in the
+ * periodic server summary. Old samples are overwritten, so the figures describe recent load.
+ */
+class LatencySamples {
+    private final String name;
+    private final long[] nanos;
+    private long recorded;
+
+    LatencySamples(String name, int capacity) {
+        this.name = name;
+        this.nanos = new long[capacity];
+    }
+
+    synchronized void record(long elapsedNanos) {
+        nanos[(int) (recorded++ % nanos.length)] = elapsedNanos;
+    }
+
+    synchronized String summary() {
+        int n = (int) Math.min(recorded, nanos.length);
+        if (n == 0) return name + ": no samples";
+        long[] sorted = Arrays.copyOf(nanos, n);
+        Arrays.sort(sorted);
+        return String.format("%s: %d calls, last %d: p50 %.2f ms, p99 %.2f ms, max %.2f ms", name, recorded, n,
+                sorted[(n - 1) / 2] / 1e6, sorted[(int) Math.ceil(n * 0.99) - 1] / 1e6, sorted[n - 1] / 1e6);
+    }
+}
@@ -0,0 +1,213 @@
+package com.myapp.server;
+
+import com.myapp.common.AuditLog;
+import com.myapp.common.LoginAttempt;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Write-behind for audit_logs and login_attempts. Records go into a bounded queue and one
+ * writer thread inserts them in batches, each batch in a single transaction.
+ *
+ * In durable mode the caller waits until the batch holding its record is committed; the
+ * writer takes whatever queued up while the previous batch was being written, so a burst
+ * of logins shares one commit (group commit). In async mode the caller returns once the
+ * record is queued and the writer waits up to flushMs for a batch to fill.
+ * A full queue blocks callers for up to QUEUE_WAIT_MS, then fails them; a durable caller
+ * gives up on its commit after WRITE_WAIT_MS.
+ *
+ * A batch that fails is written again entry by entry, so a record the database rejects
+ * only fails its own caller, not everyone who shared its group commit.
+ *
+ * Records submitted together (addLogin) travel as one entry and so always commit in the
+ * same transaction; a successful login attempt also stamps users.last_login there.
+ */
+public class LogWriter implements AutoCloseable {
+    private static final long QUEUE_WAIT_MS = 5000;
+    private static final long WRITE_WAIT_MS = 30000;
+    private static final int WRITE_ATTEMPTS = 3;
+
+    static final class Entry {
+        final Object[] records; // AuditLog or LoginAttempt
+        final long queuedNanos = System.nanoTime();
+        final CompletableFuture<Void> done; // null in async mode
+
+        Entry(Object[] records, CompletableFuture<Void> done) {
+            this.records = records;
+            this.done = done;
+        }
+    }
+
+    private final MySQLDatabase db;
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final long flushMs;
+    private final boolean durable;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public LogWriter(MySQLDatabase db, int capacity, int batchSize, long flushMs, boolean durable) {
+        this.db = db;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushMs = flushMs;
+        this.durable = durable;
+        this.writer = new Thread(this::run, "log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    void addAudit(AuditLog audit) throws SQLException {
+        submit(audit);
+    }
+
+    // One login's attempt and audit rows, plus its last_login update when it succeeded
+    void addLogin(LoginAttempt attempt, AuditLog... audits) throws SQLException {
+        Object[] records = new Object[audits.length + 1];
+        records[0] = attempt;
+        System.arraycopy(audits, 0, records, 1, audits.length);
+        submit(records);
+    }
+
+    private void submit(Object... records) throws SQLException {
+        if (closed) throw new SQLException("Log writer is closed");
+        Entry e = new Entry(records, durable ? new CompletableFuture<>() : null);
+        try {
+            if (!queue.offer(e, QUEUE_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Log queue is full");
+            }
+            // Queued after the writer and close() have both finished: nobody would take it
+            if (closed && !writer.isAlive() && queue.remove(e)) {
+                throw new SQLException("Log writer is closed");
+            }
+            if (e.done != null) e.done.get(WRITE_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while writing log", ex);
+        } catch (TimeoutException ex) {
+            throw new SQLException("Log write not committed within " + WRITE_WAIT_MS + " ms");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof SQLException) throw (SQLException) ex.getCause();
+            throw new SQLException(ex.getCause());
+        }
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                Entry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    if (closed) return;
+                    continue;
+                }
+                batch.add(first);
+                if (!durable && !closed) {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMs);
+                    while (batch.size() < batchSize) {
+                        Entry next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                        batch.add(next);
+                    }
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+                write(batch);
+            } catch (InterruptedException e) {
+                // treated as shutdown: keep what was collected and drain the rest before exiting
+                closed = true;
+                write(batch);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        if (batch.isEmpty()) return;
+        SQLException failure = insert(batch);
+        if (failure == null) {
+            finish(batch, null);
+            return;
+        }
+        if (batch.size() > 1) {
+            for (int i = 0; i < batch.size(); i++) {
+                List<Entry> one = Collections.singletonList(batch.get(i));
+                failure = insert(one);
+                if (failure == null) {
+                    finish(one, null);
+                } else if (isRecordError(failure)) {
+                    System.err.println("Dropped " + batch.get(i).records.length + " log records: " + failure.getMessage());
+                    finish(one, failure);
+                } else {
+                    // The database itself is failing, so the remaining entries would too
+                    List<Entry> rest = batch.subList(i, batch.size());
+                    System.err.println("Dropped " + rest.size() + " log entries: " + failure.getMessage());
+                    finish(rest, failure);
+                    return;
+                }
+            }
+            return;
+        }
+        System.err.println("Dropped " + batch.get(0).records.length + " log records: " + failure.getMessage());
+        finish(batch, failure);
+    }
+
+    // Returns null once written, else the last failure; a rejected record is not tried again
+    private SQLException insert(List<Entry> entries) {
+        SQLException failure = null;
+        for (int attempt = 1; attempt <= WRITE_ATTEMPTS; attempt++) {
+            try {
+                db.insertLogBatch(entries);
+                return null;
+            } catch (SQLException e) {
+                failure = e;
+                if (isRecordError(e)) break;
+            }
+        }
+        return failure;
+    }
+
+    private static void finish(List<Entry> entries, SQLException failure) {
+        for (Entry e : entries) {
+            if (e.done == null) continue;
+            if (failure == null) {
+                e.done.complete(null);
+            } else {
+                e.done.completeExceptionally(failure);
+            }
+        }
+    }
+
+    // SQLState class 22 (data exception) or 23 (constraint violation): the rows, not the connection
+    private static boolean isRecordError(SQLException e) {
+        for (SQLException x = e; x != null; x = x.getNextException()) {
+            String state = x.getSQLState();
+            if (state != null && (state.startsWith("22") || state.startsWith("23"))) return true;
+        }
+        return false;
+    }
+
+    // Stops accepting records and waits for the queued ones to be written
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Records queued while the writer was exiting
+        List<Entry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) write(rest);
+    }
+}
@@ -7,101 +7,280 @@ import com.myapp.common.Utils;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * MySQL database implementation for user management system
  */
 public class MySQLDatabase {
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/user_management?useSSL=false&serverTimezone=UTC";
+    // Server-side prepared statements, cached per pooled connection by the driver
+    private static final String DB_URL = "jdbc:mysql://localhost:3306/user_management?useSSL=false&serverTimezone=UTC&rewriteBatchedStatements=true"
+            + "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=256&prepStmtCacheSqlLimit=2048";
     private static final String DB_USER = "root"; // Change as needed
     private static final String DB_PASSWORD = "Thanhbinh12"; // Change as needed
     
-    private Connection connection;
+    // Every method borrows a pooled connection for the duration of the call
+    private final ConnectionPool pool;
+    // findById/findByUsername go through this; user writes invalidate it
+    private final UserCache users = new UserCache(Integer.getInteger("db.userCache.size", 10000));
+    
+    private static final Map<User.Field, String> USER_COLUMNS = new EnumMap<>(User.Field.class);
+    static {
+        USER_COLUMNS.put(User.Field.USERNAME, "username");
+        USER_COLUMNS.put(User.Field.PASSWORD_HASH, "password_hash");
+        USER_COLUMNS.put(User.Field.FULL_NAME, "full_name");
+        USER_COLUMNS.put(User.Field.EMAIL, "email");
+        USER_COLUMNS.put(User.Field.AVATAR, "avatar");
+        USER_COLUMNS.put(User.Field.ROLE, "role");
+        USER_COLUMNS.put(User.Field.STATUS, "status");
+        USER_COLUMNS.put(User.Field.LAST_LOGIN, "last_login");
+    }
+    // Partial UPDATE text per combination of changed fields; at most 255 entries
+    private final Map<Set<User.Field>, String> updateUserSql = new ConcurrentHashMap<>();
     
     public MySQLDatabase() throws SQLException {
         try {
             // Load MySQL JDBC driver
             Class.forName("com.mysql.cj.jdbc.Driver");
-            // Establish connection
-            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+            // Open the pool; -Ddb.pool.* tune it, -Ddb.pool.leakMs=60000 turns on leak reports
+            pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD,
+                    Integer.getInteger("db.pool.min", 2),
+                    Integer.getInteger("db.pool.max", 10),
+                    Long.getLong("db.pool.timeoutMs", 5000),
+                    Long.getLong("db.pool.idleMs", 300000),
+                    Long.getLong("db.pool.leakMs", 0));
             System.out.println("Connected to MySQL database successfully!");
         } catch (ClassNotFoundException e) {
             throw new SQLException("MySQL JDBC driver not found", e);
         }
     }
     
-    public void close() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+    // Over an already open pool, e.g. one on a scripted driver in the tests
+    MySQLDatabase(ConnectionPool pool) {
+        this.pool = pool;
+    }
+    
+    // Brings the schema up to date; see SchemaMigrator
+    public void migrateSchema() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            SchemaMigrator.migrate(connection);
         }
     }
     
+    public String poolSummary() {
+        return pool.summary();
+    }
+    
+    public String userCacheSummary() {
+        return users.summary();
+    }
+    
+    public void close() {
+        pool.close();
+    }
+    
     // ---------- Users ----------
-    public synchronized List<User> loadAllUsers() throws SQLException {
+    public List<User> loadAllUsers() throws SQLException {
         List<User> users = new ArrayList<>();
         String sql = "SELECT * FROM users ORDER BY id";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
             while (rs.next()) {
-                User user = new User();
-                user.setId(rs.getInt("id"));
-                user.setUsername(rs.getString("username"));
-                user.setPasswordHash(rs.getString("password_hash"));
-                user.setFullName(rs.getString("full_name"));
-                user.setEmail(rs.getString("email"));
-                user.setAvatar(rs.getString("avatar"));
-                user.setRole(rs.getString("role"));
-                user.setStatus(rs.getString("status"));
-                
-                Timestamp createdAt = rs.getTimestamp("created_at");
-                user.setCreatedAt(createdAt != null ? createdAt.toString() : null);
-                
-                Timestamp updatedAt = rs.getTimestamp("updated_at");
-                user.setUpdatedAt(updatedAt != null ? updatedAt.toString() : null);
-                
-                Timestamp lastLogin = rs.getTimestamp("last_login");
-                user.setLastLogin(lastLogin != null ? lastLogin.toString() : null);
-                
-                users.add(user);
+                users.add(mapUser(rs));
+            }
+        }
+        
+        return users;
+    }
+    
+    // Users created or modified at or after the given time, for delta sync
+    public List<User> loadUsersChangedSince(Timestamp since) throws SQLException {
+        List<User> users = new ArrayList<>();
+        String sql = "SELECT * FROM users WHERE updated_at >= ? ORDER BY id";
+        
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setTimestamp(1, since);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapUser(rs));
+                }
+            }
+        }
+        
+        return users;
+    }
+    
+    public int countUsers() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("SELECT COUNT(*) FROM users");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+    
+    // Database clock, so watermarks do not depend on the server's clock
+    public Timestamp currentTimestamp() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("SELECT CURRENT_TIMESTAMP");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+    
+    /**
+     * One page of the admin user list. Filters are optional (null = any); search matches
+     * the start of the username, full name or email, or the exact id, so each test is a
+     * range on that column's index. Paging is keyset on (sort column, id) so every
+     * page costs the same and ORDER BY ... LIMIT can stop early on the sort index.
+     * The cursor is "id|value" of the last row of the previous page.
+     */
+    public List<User> queryUsers(String search, String status, String role, String sortKey,
+                                              boolean descending, String cursor, int limit) throws SQLException {
+        String column = userSortColumn(sortKey);
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM users");
+        sql.append(userFilter(search, status, role, params));
+        
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] parts = cursor.split("\\|", 2);
+            int lastId = Integer.parseInt(parts[0]);
+            String op = descending ? "<" : ">";
+            if ("id".equals(column)) {
+                sql.append(" AND id ").append(op).append(" ?");
+                params.add(lastId);
+            } else {
+                sql.append(" AND (").append(column).append(" ").append(op).append(" ? OR (")
+                   .append(column).append(" = ? AND id ").append(op).append(" ?))");
+                Object value = "created_at".equals(column) ? Timestamp.valueOf(parts[1]) : parts[1];
+                params.add(value);
+                params.add(value);
+                params.add(lastId);
             }
         }
         
+        String dir = descending ? " DESC" : " ASC";
+        sql.append(" ORDER BY ");
+        if (!"id".equals(column)) sql.append(column).append(dir).append(", ");
+        sql.append("id").append(dir).append(" LIMIT ?");
+        params.add(limit);
+        
+        List<User> users = new ArrayList<>();
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+            bindParams(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapUser(rs));
+                }
+            }
+        }
         return users;
     }
     
-    public synchronized Optional<User> findByUsername(String username) throws SQLException {
+    public int countUsers(String search, String status, String role) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT COUNT(*) FROM users" + userFilter(search, status, role, params);
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            bindParams(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+    
+    // Cursor value of a row for the given sort key
+    public static String userCursor(User u, String sortKey) {
+        String column = userSortColumn(sortKey);
+        String value = "username".equals(column) ? u.getUsername() : "created_at".equals(column) ? u.getCreatedAt() : "";
+        return u.getId() + "|" + (value != null ? value : "");
+    }
+    
+    // Only whitelisted, non-null columns can be sorted on
+    private static String userSortColumn(String sortKey) {
+        if ("username".equals(sortKey)) return "username";
+        if ("createdAt".equals(sortKey)) return "created_at";
+        return "id";
+    }
+    
+    private static String userFilter(String search, String status, String role, List<Object> params) {
+        StringBuilder where = new StringBuilder(" WHERE 1=1");
+        if (search != null && !search.trim().isEmpty()) {
+            // A leading wildcard would scan the table; a prefix is a range on each index. So this
+            // matches the start of a field only, with MySQL's collation; the admin client searches
+            // substrings without accents in its own copy of the list instead (UserSearchIndex)
+            String term = search.trim();
+            String like = term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            where.append(" AND (username LIKE ? OR full_name LIKE ? OR email LIKE ?");
+            params.add(like);
+            params.add(like);
+            params.add(like);
+            if (term.matches("\\d{1,9}")) {
+                where.append(" OR id = ?");
+                params.add(Integer.parseInt(term));
+            }
+            where.append(")");
+        }
+        if (status != null && !status.isEmpty()) {
+            where.append(" AND status = ?");
+            params.add(status);
+        }
+        if (role != null && !role.isEmpty()) {
+            where.append(" AND role = ?");
+            params.add(role);
+        }
+        return where.toString();
+    }
+    
+    private static void bindParams(PreparedStatement stmt, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            stmt.setObject(i + 1, params.get(i));
+        }
+    }
+    
+    private User mapUser(ResultSet rs) throws SQLException {
+        User user = new User();
+        user.setId(rs.getInt("id"));
+        user.setUsername(rs.getString("username"));
+        user.setPasswordHash(rs.getString("password_hash"));
+        user.setFullName(rs.getString("full_name"));
+        user.setEmail(rs.getString("email"));
+        user.setAvatar(rs.getString("avatar"));
+        user.setRole(rs.getString("role"));
+        user.setStatus(rs.getString("status"));
+        
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        user.setCreatedAt(createdAt != null ? createdAt.toString() : null);
+        
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        user.setUpdatedAt(updatedAt != null ? updatedAt.toString() : null);
+        
+        Timestamp lastLogin = rs.getTimestamp("last_login");
+        user.setLastLogin(lastLogin != null ? lastLogin.toString() : null);
+        
+        user.clearChanges();
+        return user;
+    }
+    
+    public Optional<User> findByUsername(String username) throws SQLException {
+        User cached = users.getByUsername(username);
+        if (cached != null) return Optional.of(cached);
+        long generation = users.generation();
         String sql = "SELECT * FROM users WHERE username = ?";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, username);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    User user = new User();
-                    user.setId(rs.getInt("id"));
-                    user.setUsername(rs.getString("username"));
-                    user.setPasswordHash(rs.getString("password_hash"));
-                    user.setFullName(rs.getString("full_name"));
-                    user.setEmail(rs.getString("email"));
-                    user.setAvatar(rs.getString("avatar"));
-                    user.setRole(rs.getString("role"));
-                    user.setStatus(rs.getString("status"));
-                    
-                    Timestamp createdAt = rs.getTimestamp("created_at");
-                    user.setCreatedAt(createdAt != null ? createdAt.toString() : null);
-                    
-                    Timestamp updatedAt = rs.getTimestamp("updated_at");
-                    user.setUpdatedAt(updatedAt != null ? updatedAt.toString() : null);
-                    
-                    Timestamp lastLogin = rs.getTimestamp("last_login");
-                    user.setLastLogin(lastLogin != null ? lastLogin.toString() : null);
-                    
+                    User user = mapUser(rs);
+                    users.put(user, generation);
                     return Optional.of(user);
                 }
             }
@@ -110,33 +289,20 @@ public class MySQLDatabase {
         return Optional.empty();
     }
     
-    public synchronized Optional<User> findById(int id) throws SQLException {
+    public Optional<User> findById(int id) throws SQLException {
+        User cached = users.getById(id);
+        if (cached != null) return Optional.of(cached);
+        long generation = users.generation();
         String sql = "SELECT * FROM users WHERE id = ?";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    User user = new User();
-                    user.setId(rs.getInt("id"));
-                    user.setUsername(rs.getString("username"));
-                    user.setPasswordHash(rs.getString("password_hash"));
-                    user.setFullName(rs.getString("full_name"));
-                    user.setEmail(rs.getString("email"));
-                    user.setAvatar(rs.getString("avatar"));
-                    user.setRole(rs.getString("role"));
-                    user.setStatus(rs.getString("status"));
-                    
-                    Timestamp createdAt = rs.getTimestamp("created_at");
-                    user.setCreatedAt(createdAt != null ? createdAt.toString() : null);
-                    
-                    Timestamp updatedAt = rs.getTimestamp("updated_at");
-                    user.setUpdatedAt(updatedAt != null ? updatedAt.toString() : null);
-                    
-                    Timestamp lastLogin = rs.getTimestamp("last_login");
-                    user.setLastLogin(lastLogin != null ? lastLogin.toString() : null);
-                    
+                    User user = mapUser(rs);
+                    users.put(user, generation);
                     return Optional.of(user);
                 }
             }
@@ -145,10 +311,11 @@ public class MySQLDatabase {
         return Optional.empty();
     }
     
-    public synchronized User addUser(User user) throws SQLException {
+    public User addUser(User user) throws SQLException {
         String sql = "INSERT INTO users (username, password_hash, full_name, email, avatar, role, status) VALUES (?, ?, ?, ?, ?, ?, ?)";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, user.getUsername());
             stmt.setString(2, user.getPasswordHash());
             stmt.setString(3, user.getFullName());
@@ -165,6 +332,7 @@ public class MySQLDatabase {
             try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
                     user.setId(generatedKeys.getInt(1));
+                    users.invalidate(user.getId());
                 } else {
                     throw new SQLException("Creating user failed, no ID obtained.");
                 }
@@ -174,38 +342,66 @@ public class MySQLDatabase {
         return user;
     }
     
-    public synchronized void updateUser(User user) throws SQLException {
-        String sql = "UPDATE users SET username=?, password_hash=?, full_name=?, email=?, avatar=?, role=?, status=?, last_login=? WHERE id=?";
+    // Writes only the columns whose setters changed a value; a user with no changes costs no statement
+    public void updateUser(User user) throws SQLException {
+        Set<User.Field> changed = user.getChangedFields();
+        if (changed.isEmpty()) return;
+        String sql = updateUserSql.computeIfAbsent(changed, MySQLDatabase::buildUpdateUserSql);
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, user.getUsername());
-            stmt.setString(2, user.getPasswordHash());
-            stmt.setString(3, user.getFullName());
-            stmt.setString(4, user.getEmail());
-            stmt.setString(5, user.getAvatar());
-            stmt.setString(6, user.getRole());
-            stmt.setString(7, user.getStatus());
-            
-            if (user.getLastLogin() != null) {
-                stmt.setTimestamp(8, Timestamp.valueOf(user.getLastLogin()));
-            } else {
-                stmt.setNull(8, Types.TIMESTAMP);
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int i = 1;
+            for (User.Field field : changed) {
+                if (field == User.Field.LAST_LOGIN) {
+                    if (user.getLastLogin() != null) {
+                        stmt.setTimestamp(i++, Timestamp.valueOf(user.getLastLogin()));
+                    } else {
+                        stmt.setNull(i++, Types.TIMESTAMP);
+                    }
+                } else {
+                    stmt.setString(i++, userFieldValue(user, field));
+                }
             }
-            
-            stmt.setInt(9, user.getId());
+            stmt.setInt(i, user.getId());
             
             int affectedRows = stmt.executeUpdate();
+            users.invalidate(user.getId());
             if (affectedRows == 0) {
                 throw new SQLException("Updating user failed, user not found with id: " + user.getId());
             }
+            user.clearChanges();
+        }
+    }
+    
+    // EnumSet iterates in declaration order, so each combination of fields maps to one SQL string
+    private static String buildUpdateUserSql(Set<User.Field> fields) {
+        StringBuilder sql = new StringBuilder("UPDATE users SET ");
+        for (User.Field field : fields) {
+            if (sql.charAt(sql.length() - 1) == '?') sql.append(", ");
+            sql.append(USER_COLUMNS.get(field)).append("=?");
+        }
+        return sql.append(" WHERE id=?").toString();
+    }
+    
+    private static String userFieldValue(User user, User.Field field) {
+        switch (field) {
+            case USERNAME: return user.getUsername();
+            case PASSWORD_HASH: return user.getPasswordHash();
+            case FULL_NAME: return user.getFullName();
+            case EMAIL: return user.getEmail();
+            case AVATAR: return user.getAvatar();
+            case ROLE: return user.getRole();
+            case STATUS: return user.getStatus();
+            default: throw new IllegalArgumentException("Not a string column: " + field);
         }
     }
     
     // ---------- Login attempts ----------
-    public synchronized void addAttempt(LoginAttempt attempt) throws SQLException {
+    public void addAttempt(LoginAttempt attempt) throws SQLException {
         String sql = "INSERT INTO login_attempts (user_id, username, success, ip) VALUES (?, ?, ?, ?)";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             if (attempt.getUserId() != null) {
                 stmt.setInt(1, attempt.getUserId());
             } else {
@@ -219,10 +415,11 @@ public class MySQLDatabase {
         }
     }
     
-    public synchronized int countRecentFailedAttempts(String username, int minutes) throws SQLException {
+    public int countRecentFailedAttempts(String username, int minutes) throws SQLException {
         String sql = "SELECT COUNT(*) FROM login_attempts WHERE username = ? AND success = false AND attempt_time > DATE_SUB(NOW(), INTERVAL ? MINUTE)";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, username);
             stmt.setInt(2, minutes);
             
@@ -236,28 +433,111 @@ public class MySQLDatabase {
         return 0;
     }
     
-    // Method to count recent failed attempts for AuthService (simplified)
-    public synchronized int countRecentFailed(String username) throws SQLException {
-        // Count failed attempts in the last 60 minutes
-        return countRecentFailedAttempts(username, 60);
+    /**
+     * Failed attempts of existing accounts in the last minutes that came after the account's
+     * latest successful login, as milliseconds ago (oldest first) per username. Ages are
+     * computed by the database, so the server's clock need not match the database's.
+     */
+    public Map<String, List<Long>> loadRecentFailures(int minutes) throws SQLException {
+        Map<String, List<Long>> failures = new HashMap<>();
+        String sql = "SELECT f.username, TIMESTAMPDIFF(MICROSECOND, f.attempt_time, NOW()) DIV 1000 AS age_ms "
+                + "FROM login_attempts f WHERE f.success = FALSE AND f.user_id IS NOT NULL "
+                + "AND f.attempt_time > DATE_SUB(NOW(), INTERVAL ? MINUTE) "
+                + "AND NOT EXISTS (SELECT 1 FROM login_attempts s WHERE s.username = f.username AND s.success = TRUE AND s.id > f.id) "
+                + "ORDER BY f.id";
+
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, minutes);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    failures.computeIfAbsent(rs.getString("username"), k -> new ArrayList<>()).add(rs.getLong("age_ms"));
+                }
+            }
+        }
+
+        return failures;
     }
     
-    // Method to reset failed login attempts count for a user (for successful login)
-    public synchronized void resetFailedAttempts(String username) throws SQLException {
-        String sql = "DELETE FROM login_attempts WHERE username = ? AND success = FALSE";
-        
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, username);
-            int deletedRows = stmt.executeUpdate();
-            System.out.println("Reset " + deletedRows + " failed login attempts for user: " + username);
+    /**
+     * Inserts records queued by LogWriter in one transaction. Their timestamps are set back
+     * by the time each one waited in the queue, measured against the database clock like
+     * the column defaults. Successful login attempts also set users.last_login, and those
+     * users leave the cache once the transaction commits.
+     */
+    void insertLogBatch(List<LogWriter.Entry> batch) throws SQLException {
+        String attemptSql = "INSERT INTO login_attempts (user_id, username, success, ip, attempt_time) VALUES (?, ?, ?, ?, NOW(6) - INTERVAL ? MICROSECOND)";
+        String auditSql = "INSERT INTO audit_logs (user_id, action, details, created_at) VALUES (?, ?, ?, NOW(6) - INTERVAL ? MICROSECOND)";
+        String lastLoginSql = "UPDATE users SET last_login = NOW(6) - INTERVAL ? MICROSECOND WHERE id = ?";
+        long now = System.nanoTime();
+        List<Integer> loggedIn = new ArrayList<>();
+
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement attempts = connection.prepareStatement(attemptSql);
+                 PreparedStatement audits = connection.prepareStatement(auditSql);
+                 PreparedStatement lastLogins = connection.prepareStatement(lastLoginSql)) {
+                int attemptCount = 0;
+                int auditCount = 0;
+                for (LogWriter.Entry e : batch) {
+                    long waitedMicros = (now - e.queuedNanos) / 1000;
+                    for (Object record : e.records) {
+                        if (record instanceof LoginAttempt) {
+                            LoginAttempt attempt = (LoginAttempt) record;
+                            if (attempt.isSuccess() && attempt.getUserId() != null) {
+                                lastLogins.setLong(1, waitedMicros);
+                                lastLogins.setInt(2, attempt.getUserId());
+                                lastLogins.addBatch();
+                                loggedIn.add(attempt.getUserId());
+                            }
+                            if (attempt.getUserId() != null) {
+                                attempts.setInt(1, attempt.getUserId());
+                            } else {
+                                attempts.setNull(1, Types.INTEGER);
+                            }
+                            attempts.setString(2, attempt.getUsername());
+                            attempts.setBoolean(3, attempt.isSuccess());
+                            attempts.setString(4, attempt.getIp());
+                            attempts.setLong(5, waitedMicros);
+                            attempts.addBatch();
+                            attemptCount++;
+                        } else {
+                            AuditLog audit = (AuditLog) record;
+                            if (audit.getUserId() != null) {
+                                audits.setInt(1, audit.getUserId());
+                            } else {
+                                audits.setNull(1, Types.INTEGER);
+                            }
+                            audits.setString(2, audit.getAction());
+                            audits.setString(3, audit.getDetails());
+                            audits.setLong(4, waitedMicros);
+                            audits.addBatch();
+                            auditCount++;
+                        }
+                    }
+                }
+                if (attemptCount > 0) attempts.executeBatch();
+                if (auditCount > 0) audits.executeBatch();
+                if (!loggedIn.isEmpty()) lastLogins.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                try { connection.rollback(); } catch (SQLException ignored) {}
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+        for (Integer id : loggedIn) {
+            users.invalidate(id);
         }
     }
     
     // ---------- Audit logs ----------
-    public synchronized void addAudit(AuditLog audit) throws SQLException {
+    public void addAudit(AuditLog audit) throws SQLException {
         String sql = "INSERT INTO audit_logs (user_id, action, details) VALUES (?, ?, ?)";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             if (audit.getUserId() != null) {
                 stmt.setInt(1, audit.getUserId());
             } else {
@@ -270,36 +550,80 @@ public class MySQLDatabase {
         }
     }
     
-    public synchronized List<AuditLog> loadAudits() throws SQLException {
+    // Audit rows come with the username and role of their user, joined in the same query
+    public List<AuditLog> loadAudits() throws SQLException {
         List<AuditLog> audits = new ArrayList<>();
-        String sql = "SELECT * FROM audit_logs ORDER BY created_at DESC LIMIT 1000";
+        String sql = "SELECT a.*, u.username AS user_name, u.role AS user_role FROM audit_logs a "
+                + "LEFT JOIN users u ON u.id = a.user_id ORDER BY a.created_at DESC LIMIT 1000";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
             while (rs.next()) {
-                AuditLog audit = new AuditLog();
-                audit.setId(rs.getInt("id"));
-                audit.setUserId(rs.getObject("user_id", Integer.class));
-                audit.setAction(rs.getString("action"));
-                audit.setDetails(rs.getString("details"));
-                
-                Timestamp createdAt = rs.getTimestamp("created_at");
-                audit.setCreatedAt(createdAt != null ? createdAt.toString() : null);
-                
-                audits.add(audit);
+                audits.add(mapAudit(rs));
             }
         }
         
         return audits;
     }
     
+    private AuditLog mapAudit(ResultSet rs) throws SQLException {
+        AuditLog audit = new AuditLog();
+        audit.setId(rs.getInt("id"));
+        audit.setUserId(rs.getObject("user_id", Integer.class));
+        audit.setAction(rs.getString("action"));
+        audit.setDetails(rs.getString("details"));
+        
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        audit.setCreatedAt(createdAt != null ? createdAt.toString() : null);
+        
+        audit.setUsername(rs.getString("user_name"));
+        audit.setUserRole(rs.getString("user_role"));
+        return audit;
+    }
+    
+    /**
+     * One chunk of the audit export, newest first. Pass a null beforeTime for the first chunk,
+     * then the created_at and id of the last row received; each call is a short indexed
+     * query, so an export of any length never holds the connection for long.
+     * The "<= ? AND (< ? OR id < ?)" form of the keyset condition is what lets MySQL turn it
+     * into a range on the (created_at, id) index, so a deep page costs the same as the first.
+     */
+    public List<AuditLog> loadAuditsBefore(Timestamp beforeTime, int beforeId, int limit) throws SQLException {
+        List<AuditLog> audits = new ArrayList<>();
+        String sql = "SELECT a.*, u.username AS user_name, u.role AS user_role FROM audit_logs a "
+                + "LEFT JOIN users u ON u.id = a.user_id"
+                + (beforeTime != null ? " WHERE a.created_at <= ? AND (a.created_at < ? OR a.id < ?)" : "")
+                + " ORDER BY a.created_at DESC, a.id DESC LIMIT ?";
+
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int i = 1;
+            if (beforeTime != null) {
+                stmt.setTimestamp(i++, beforeTime);
+                stmt.setTimestamp(i++, beforeTime);
+                stmt.setInt(i++, beforeId);
+            }
+            stmt.setInt(i, limit);
+            stmt.setFetchSize(limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    audits.add(mapAudit(rs));
+                }
+            }
+        }
+
+        return audits;
+    }
+
     // Get login attempts by username for user history
-    public synchronized List<LoginAttempt> getLoginAttemptsByUsername(String username) throws SQLException {
+    public List<LoginAttempt> getLoginAttemptsByUsername(String username) throws SQLException {
         List<LoginAttempt> attempts = new ArrayList<>();
         String sql = "SELECT * FROM login_attempts WHERE username = ? ORDER BY attempt_time DESC LIMIT 50";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, username);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
@@ -319,21 +643,16 @@ public class MySQLDatabase {
     }
     
     // Get audit logs by user ID for user history
-    public synchronized List<AuditLog> getAuditLogsByUserId(int userId) throws SQLException {
+    public List<AuditLog> getAuditLogsByUserId(int userId) throws SQLException {
         List<AuditLog> audits = new ArrayList<>();
     String sql = "SELECT * FROM audit_logs WHERE user_id = ? ORDER BY created_at DESC";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    AuditLog audit = new AuditLog();
-                    audit.setId(rs.getInt("id"));
-                    audit.setUserId(rs.getInt("user_id"));
-                    audit.setAction(rs.getString("action"));
-                    audit.setDetails(rs.getString("details"));
-                    audit.setCreatedAt(rs.getString("created_at"));
-                    audits.add(audit);
+                    audits.add(mapHistoryAudit(rs));
                 }
             }
         }
@@ -341,12 +660,52 @@ public class MySQLDatabase {
         return audits;
     }
     
+    // One page of a user's history, same keyset scheme as loadAuditsBefore on (user_id, created_at)
+    public List<AuditLog> getAuditLogsByUserIdBefore(int userId, Timestamp beforeTime, int beforeId, int limit) throws SQLException {
+        List<AuditLog> audits = new ArrayList<>();
+        String sql = "SELECT * FROM audit_logs WHERE user_id = ?"
+                + (beforeTime != null ? " AND created_at <= ? AND (created_at < ? OR id < ?)" : "")
+                + " ORDER BY created_at DESC, id DESC LIMIT ?";
+        
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int i = 1;
+            stmt.setInt(i++, userId);
+            if (beforeTime != null) {
+                stmt.setTimestamp(i++, beforeTime);
+                stmt.setTimestamp(i++, beforeTime);
+                stmt.setInt(i++, beforeId);
+            }
+            stmt.setInt(i, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    audits.add(mapHistoryAudit(rs));
+                }
+            }
+        }
+        
+        return audits;
+    }
+    
+    private AuditLog mapHistoryAudit(ResultSet rs) throws SQLException {
+        AuditLog audit = new AuditLog();
+        audit.setId(rs.getInt("id"));
+        audit.setUserId(rs.getInt("user_id"));
+        audit.setAction(rs.getString("action"));
+        audit.setDetails(rs.getString("details"));
+        // Same conversion as the bound cursor, so a page boundary survives any JVM time zone
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        audit.setCreatedAt(createdAt != null ? createdAt.toString() : null);
+        return audit;
+    }
+    
     // Get all login attempts for admin dashboard
-    public synchronized List<LoginAttempt> getAllLoginAttempts() throws SQLException {
+    public List<LoginAttempt> getAllLoginAttempts() throws SQLException {
         List<LoginAttempt> attempts = new ArrayList<>();
         String sql = "SELECT * FROM login_attempts ORDER BY attempt_time DESC LIMIT 200";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
                 LoginAttempt attempt = new LoginAttempt();
@@ -362,4 +721,39 @@ public class MySQLDatabase {
         
         return attempts;
     }
+
+    // One chunk of the login log export, same keyset scheme as loadAuditsBefore
+    public List<LoginAttempt> getLoginAttemptsBefore(Timestamp beforeTime, int beforeId, int limit) throws SQLException {
+        List<LoginAttempt> attempts = new ArrayList<>();
+        String sql = "SELECT * FROM login_attempts"
+                + (beforeTime != null ? " WHERE attempt_time <= ? AND (attempt_time < ? OR id < ?)" : "")
+                + " ORDER BY attempt_time DESC, id DESC LIMIT ?";
+
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int i = 1;
+            if (beforeTime != null) {
+                stmt.setTimestamp(i++, beforeTime);
+                stmt.setTimestamp(i++, beforeTime);
+                stmt.setInt(i++, beforeId);
+            }
+            stmt.setInt(i, limit);
+            stmt.setFetchSize(limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    LoginAttempt attempt = new LoginAttempt();
+                    attempt.setId(rs.getInt("id"));
+                    attempt.setUserId(rs.getObject("user_id", Integer.class));
+                    attempt.setUsername(rs.getString("username"));
+                    Timestamp time = rs.getTimestamp("attempt_time");
+                    attempt.setAttemptTime(time != null ? time.toString() : null);
+                    attempt.setSuccess(rs.getBoolean("success"));
+                    attempt.setIp(rs.getString("ip"));
+                    attempts.add(attempt);
+                }
+            }
+        }
+
+        return attempts;
+    }
 }
\ No newline at end of file
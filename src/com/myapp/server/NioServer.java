@@ -0,0 +1,708 @@
+package com.myapp.server;
+
+import com.myapp.common.Batch;
+import com.myapp.common.BinaryMessageStream;
+import com.myapp.common.MessageStream;
+import com.myapp.common.ObjectMessageStream;
+import com.myapp.common.Request;
+import com.myapp.common.Response;
+import com.myapp.common.WireProtocol;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Selector-based transport: a few I/O loop threads own all sockets and hand
+ * complete requests to a bounded worker pool running ClientHandler.process.
+ * Idle sessions hold no thread, only their buffers. Workers never wait for a
+ * client: a message is decoded once all of it has arrived, and a connection
+ * whose request must wait for its in-flight work, or whose client has fallen
+ * behind reading, is parked with reading paused. The only work that may wait
+ * on a client, streamed exports and legacy Java-serialization readers, runs on
+ * a separate executor, virtual threads where the JDK has them.
+ */
+public class NioServer {
+    private static final long IDLE_TIMEOUT_MS = 300000; // same as setSoTimeout of the blocking transport
+    private static final long PARTIAL_READ_TIMEOUT_MS = 30000; // for the rest of a message, or for a client to read
+    private static final int MAX_QUEUED_OUTPUT = 1024 * 1024; // a slow client with this much unsent gets no new requests
+    private static final int MAX_BUFFERED_INPUT = 256 * 1024; // undecoded bytes read ahead of the worker
+
+    private final int port;
+    private final MySQLDatabase db;
+    private final AuthService auth;
+    private final IoLoop[] loops;
+    private final ThreadPoolExecutor workers;
+    private final Executor waitingExecutor; // streamed exports, batches and legacy readers, which may wait
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    public NioServer(int port, MySQLDatabase db, AuthService auth, int ioThreads, int workerThreads, int queueSize,
+            Executor waitingExecutor) {
+        this.port = port;
+        this.db = db;
+        this.auth = auth;
+        this.loops = new IoLoop[Math.max(1, ioThreads)];
+        this.waitingExecutor = waitingExecutor;
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Worker(r, "nio-worker-" + workerCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    // Marks the pool's threads, whose sends must never wait for a client
+    private static final class Worker extends Thread {
+        Worker(Runnable r, String name) {
+            super(r, name);
+        }
+    }
+
+    public void serve() throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new IoLoop(Selector.open());
+            Thread t = new Thread(loops[i], "nio-io-" + (i + 1));
+            t.setDaemon(true);
+            t.start();
+        }
+
+        try (ServerSocketChannel ssc = ServerSocketChannel.open()) {
+            ssc.bind(new InetSocketAddress(port));
+            System.out.println("Server listening on port " + port + " (NIO, " + loops.length + " I/O threads, "
+                    + workers.getMaximumPoolSize() + " workers)");
+            while (true) {
+                SocketChannel ch = ssc.accept();
+                System.out.println("Connected: " + ch.socket().getInetAddress());
+                ch.configureBlocking(false);
+                ch.socket().setTcpNoDelay(true);
+                loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)].register(ch);
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private class IoLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pendingRegistrations = new ConcurrentLinkedQueue<>();
+        private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>(); // key changes asked for by workers
+        private final Queue<Connection> pendingDispatch = new ArrayDeque<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(8192); // shared by every connection of this loop
+        private long lastIdleCheck = System.currentTimeMillis();
+
+        IoLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void register(SocketChannel ch) {
+            pendingRegistrations.add(ch);
+            selector.wakeup();
+        }
+
+        void requestWrite(Connection c) {
+            pendingWrites.add(c);
+            selector.wakeup();
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select(1000);
+                    processRegistrations();
+                    processWriteRequests();
+                    processTasks();
+                    retryDispatch();
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        Connection c = (Connection) key.attachment();
+                        if (!key.isValid()) {
+                            c.close();
+                            continue;
+                        }
+                        try {
+                            if (key.isReadable()) c.onReadable();
+                            if (key.isValid() && key.isWritable()) c.onWritable();
+                        } catch (IOException e) {
+                            System.out.println("Client connection lost: " + e.getMessage());
+                            c.close();
+                        }
+                    }
+                    closeIdleConnections();
+                } catch (IOException e) {
+                    System.out.println("I/O loop error: " + e.getMessage());
+                } catch (ClosedSelectorException e) {
+                    return;
+                }
+            }
+        }
+
+        private void processRegistrations() {
+            SocketChannel ch;
+            while ((ch = pendingRegistrations.poll()) != null) {
+                try {
+                    Connection c = new Connection(ch, this);
+                    c.key = ch.register(selector, SelectionKey.OP_READ, c);
+                } catch (IOException e) {
+                    System.out.println("Connection error: " + e.getMessage());
+                    try { ch.close(); } catch (IOException ignored) {}
+                }
+            }
+        }
+
+        private void processWriteRequests() {
+            Connection c;
+            while ((c = pendingWrites.poll()) != null) {
+                if (c.key != null && c.key.isValid()) {
+                    c.key.interestOps(c.key.interestOps() | SelectionKey.OP_WRITE);
+                }
+            }
+        }
+
+        private void processTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        // Connections whose dispatch was rejected by a full worker queue stop reading until accepted
+        private void retryDispatch() {
+            int n = pendingDispatch.size();
+            for (int i = 0; i < n; i++) {
+                Connection c = pendingDispatch.poll();
+                if (c.key.isValid() && c.tryDispatch()) {
+                    c.dispatchPending = false;
+                    c.updateReading();
+                } else if (c.key.isValid()) {
+                    pendingDispatch.add(c);
+                }
+            }
+        }
+
+        private void closeIdleConnections() {
+            long now = System.currentTimeMillis();
+            if (now - lastIdleCheck < 1000) return;
+            lastIdleCheck = now;
+            for (SelectionKey key : selector.keys()) {
+                Connection c = (Connection) key.attachment();
+                if (c == null) continue;
+                if (now - c.lastRead > IDLE_TIMEOUT_MS) {
+                    System.out.println("Client connection timed out (inactive)");
+                    c.close();
+                } else if (c.incompleteSince != 0 && now - c.incompleteSince > PARTIAL_READ_TIMEOUT_MS) {
+                    System.out.println("Client connection timed out (incomplete message)");
+                    c.close();
+                } else if (c.congestedSince != 0 && now - c.congestedSince > PARTIAL_READ_TIMEOUT_MS) {
+                    System.out.println("Client connection timed out (not reading)");
+                    c.close();
+                }
+            }
+        }
+    }
+
+    private class Connection {
+        private final SocketChannel channel;
+        private final IoLoop loop;
+        private final String ip;
+        private final ClientHandler handler;
+        private final InboundBuffer inbound = new InboundBuffer();
+        private final Queue<ByteBuffer> writeQueue = new ArrayDeque<>();
+        // Guards writeQueue; a lock rather than a monitor, since a virtual thread waits on it
+        private final ReentrantLock outputLock = new ReentrantLock();
+        private final Condition outputDrained = outputLock.newCondition();
+        private long queued; // bytes in writeQueue
+        private final Object writeLock = new Object();
+        private final OutboundBuffer outBytes = new OutboundBuffer();
+        private MessageStream stream; // negotiated on the worker once the client's first bytes arrive
+        private SelectionKey key;
+        private volatile Request parked; // decoded, waiting for in-flight slots
+        private volatile boolean outputParked; // no decoding until the client reads its backlog
+        private volatile boolean inputFull; // MAX_BUFFERED_INPUT read ahead, no reading until the worker catches up
+        private boolean dispatchPending; // loop thread: waiting in pendingDispatch for room in the worker queue
+        private volatile long congestedSince; // when queued output went over the limit, 0 if it is not
+        private volatile long lastRead = System.currentTimeMillis();
+        private volatile long incompleteSince; // when the worker last gave up on a partial message, 0 if none
+        private volatile boolean closed;
+
+        Connection(SocketChannel channel, IoLoop loop) throws IOException {
+            this.channel = channel;
+            this.loop = loop;
+            this.ip = channel.socket().getInetAddress().getHostAddress();
+            this.handler = new ClientHandler(db, auth);
+            this.handler.setResponseSink(this::send);
+            this.handler.setReleaseListener(this::onRequestFinished);
+        }
+
+        void onReadable() throws IOException {
+            ByteBuffer readBuffer = loop.readBuffer;
+            readBuffer.clear();
+            int n = channel.read(readBuffer);
+            if (n < 0) {
+                System.out.println("Client disconnected normally");
+                close();
+                return;
+            }
+            if (n == 0) return;
+            lastRead = System.currentTimeMillis();
+            readBuffer.flip();
+            boolean schedule = inbound.append(readBuffer);
+            if (!inputFull && inbound.isFull()) {
+                inputFull = true;
+                updateReading();
+            }
+            if (schedule && !tryDispatch()) {
+                dispatchPending = true;
+                updateReading();
+                loop.pendingDispatch.add(this);
+            }
+        }
+
+        boolean tryDispatch() {
+            try {
+                workers.execute(this::drain);
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        void onWritable() throws IOException {
+            outputLock.lock();
+            try {
+                while (!writeQueue.isEmpty()) {
+                    ByteBuffer buf = writeQueue.peek();
+                    queued -= channel.write(buf);
+                    if (buf.hasRemaining()) break;
+                    writeQueue.poll();
+                }
+                if (writeQueue.isEmpty()) key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                if (queued > MAX_QUEUED_OUTPUT) return;
+                congestedSince = 0;
+                outputDrained.signalAll();
+            } finally {
+                outputLock.unlock();
+            }
+            if (outputParked) {
+                outputParked = false;
+                updateReading();
+                resume();
+            }
+        }
+
+        // Runs on a worker: decode every complete request that has arrived, start it, then release the thread
+        private void drain() {
+            try {
+                while (!closed) {
+                    if (parked != null) {
+                        if (!handler.tryDispatch(parked, ip, executorFor(parked))) {
+                            if (park()) return;
+                            continue;
+                        }
+                        parked = null;
+                        loop.execute(this::updateReading);
+                        continue;
+                    }
+                    if (outputCongested()) {
+                        // Like a parked request: onWritable schedules the next drain once the client catches up
+                        outputParked = true;
+                        loop.execute(this::updateReading);
+                        inbound.finish();
+                        if (outputCongested() || !inbound.trySchedule()) return;
+                        outputParked = false;
+                        loop.execute(this::updateReading);
+                        continue;
+                    }
+                    if (!inbound.hasDataOrFinish()) return;
+
+                    inbound.mark();
+                    Object o;
+                    try {
+                        if (stream == null) {
+                            negotiate();
+                            inbound.unmark();
+                            incompleteSince = 0;
+                            if (stream instanceof ObjectMessageStream) {
+                                startLegacyReader();
+                                return; // keeps the buffer marked scheduled, so no worker drains it again
+                            }
+                            continue;
+                        }
+                        if (!inbound.frameBuffered()) throw Incomplete.INSTANCE;
+                        o = stream.read();
+                    } catch (Incomplete e) {
+                        // Nothing was consumed: wait for the rest without holding the worker
+                        if (!inbound.rewindAndFinish()) continue; // more bytes came in meanwhile
+                        if (incompleteSince == 0) incompleteSince = System.currentTimeMillis();
+                        return;
+                    }
+                    inbound.unmark();
+                    incompleteSince = 0;
+                    if (inputFull && inbound.available() < MAX_BUFFERED_INPUT / 2) {
+                        inputFull = false;
+                        loop.execute(this::updateReading);
+                    }
+                    if (!(o instanceof Request)) {
+                        close();
+                        return;
+                    }
+                    Request req = (Request) o;
+                    if (!handler.tryDispatch(req, ip, executorFor(req))) {
+                        parked = req;
+                        loop.execute(this::updateReading);
+                        if (park()) return;
+                    }
+                }
+            } catch (Exception e) {
+                if (!closed) {
+                    System.out.println("Connection error: " + e.getMessage());
+                    close();
+                }
+            }
+        }
+
+        // The handshake reads through to the reply, so a retry after a partial one starts from scratch
+        private void negotiate() throws IOException {
+            synchronized (writeLock) {
+                try {
+                    stream = WireProtocol.accept(inbound, outBytes);
+                } catch (Incomplete e) {
+                    outBytes.reset();
+                    throw e;
+                }
+                enqueueOutput();
+            }
+        }
+
+        /**
+         * Gives up the worker while the parked request waits; onRequestFinished schedules the
+         * next drain. Returns false when a slot freed up before the buffer was released and
+         * this drain took it back, in which case the caller carries on.
+         */
+        private boolean park() {
+            inbound.finish();
+            return !(handler.canDispatch(parked, workers) && inbound.trySchedule());
+        }
+
+        // A streamed export waits for the client between chunks and a batch for its parts,
+        // so neither may hold a worker
+        private Executor executorFor(Request req) {
+            return ClientHandler.isStreamed(req) || Batch.ACTION.equals(req.getAction()) ? waitingExecutor : workers;
+        }
+
+        // Called by the handler, on any thread, whenever a request of this connection finishes
+        private void onRequestFinished() {
+            if (parked != null) loop.execute(this::resumeParked);
+        }
+
+        // Loop thread
+        private void resumeParked() {
+            if (parked != null) resume();
+        }
+
+        // Loop thread: schedules a drain unless one is already running
+        private void resume() {
+            if (closed || !inbound.trySchedule()) return;
+            if (!tryDispatch()) {
+                dispatchPending = true;
+                updateReading();
+                loop.pendingDispatch.add(this);
+            }
+        }
+
+        /**
+         * Loop thread: reads only while the worker can use what arrives. A parked request, a
+         * client behind on reading, a full worker queue or enough undecoded input all leave the
+         * rest of the client's requests waiting in the socket.
+         */
+        private void updateReading() {
+            if (!key.isValid()) return;
+            boolean read = parked == null && !outputParked && !inputFull && !dispatchPending;
+            key.interestOps(read ? key.interestOps() | SelectionKey.OP_READ : key.interestOps() & ~SelectionKey.OP_READ);
+        }
+
+        /**
+         * Java serialization has no frame length, so a partial object cannot be told from a
+         * complete one without decoding it. Legacy clients get a reader of their own on the
+         * waiting executor, which may wait for bytes as on the blocking transport, and run
+         * their requests inline. With virtual threads that costs no platform thread; on older
+         * JDKs it is one pooled platform thread per legacy client, as before NIO.
+         */
+        private void startLegacyReader() {
+            inbound.setBlocking();
+            waitingExecutor.execute(() -> {
+                try {
+                    while (!closed) {
+                        Object o = stream.read();
+                        if (!(o instanceof Request)) break;
+                        handler.dispatch((Request) o, ip, null);
+                    }
+                    close();
+                } catch (Exception e) {
+                    if (!closed) {
+                        System.out.println("Connection error: " + e.getMessage());
+                        close();
+                    }
+                }
+            });
+        }
+
+        /**
+         * Queues a response. A worker never waits here: a backlog only stops the connection from
+         * taking new requests (see drain). Other senders, streamed exports, wait for a slow reader
+         * to catch up so that an export stays bounded.
+         */
+        void send(Response resp) throws IOException {
+            synchronized (writeLock) {
+                stream.write(resp);
+                enqueueOutput();
+            }
+            if (!(Thread.currentThread() instanceof Worker)) awaitOutputDrained();
+        }
+
+        private void awaitOutputDrained() throws IOException {
+            long deadline = System.currentTimeMillis() + PARTIAL_READ_TIMEOUT_MS;
+            outputLock.lock();
+            try {
+                while (queued > MAX_QUEUED_OUTPUT) {
+                    if (closed) throw new IOException("Connection closed");
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) throw new java.net.SocketTimeoutException("Client is not reading");
+                    try {
+                        outputDrained.await(wait, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+            } finally {
+                outputLock.unlock();
+            }
+        }
+
+        private boolean outputCongested() {
+            outputLock.lock();
+            try {
+                return queued > MAX_QUEUED_OUTPUT;
+            } finally {
+                outputLock.unlock();
+            }
+        }
+
+        private void enqueueOutput() throws IOException {
+            ByteBuffer buf = outBytes.drain();
+            outputLock.lock();
+            try {
+                if (writeQueue.isEmpty()) {
+                    channel.write(buf);
+                    if (!buf.hasRemaining()) return;
+                }
+                writeQueue.add(buf);
+                queued += buf.remaining();
+                if (queued > MAX_QUEUED_OUTPUT && congestedSince == 0) congestedSince = System.currentTimeMillis();
+            } finally {
+                outputLock.unlock();
+            }
+            loop.requestWrite(this);
+        }
+
+        synchronized void close() {
+            if (closed) return;
+            closed = true;
+            inbound.close();
+            if (key != null) key.cancel();
+            try { channel.close(); } catch (IOException ignored) {}
+            outputLock.lock();
+            try {
+                outputDrained.signalAll();
+            } finally {
+                outputLock.unlock();
+            }
+            handler.onDisconnect();
+        }
+    }
+
+    // Encoded responses waiting to be handed to the write queue
+    private static class OutboundBuffer extends ByteArrayOutputStream {
+        OutboundBuffer() {
+            super(256);
+        }
+
+        // Takes the pending bytes and drops a buffer grown by a large message
+        ByteBuffer drain() {
+            ByteBuffer b = ByteBuffer.wrap(Arrays.copyOf(buf, count));
+            count = 0;
+            if (buf.length > 64 * 1024) buf = new byte[256];
+            return b;
+        }
+    }
+
+    /**
+     * Bytes received but not yet decoded. Workers only decode a message once all of it is here:
+     * reading past the end throws Incomplete, and the worker rewinds to the mark and leaves.
+     * Only a legacy reader thread, which owns its connection, waits for more bytes instead.
+     */
+    private static class InboundBuffer extends InputStream {
+        private byte[] buf = new byte[512];
+        private int start;
+        private int end;
+        private int mark = -1; // start of the message being decoded
+        private int endAtMark;
+        private boolean closed;
+        private boolean scheduled;
+        private boolean blocking;
+
+        // Returns true if a worker must be scheduled to drain this buffer
+        synchronized boolean append(ByteBuffer src) {
+            int n = src.remaining();
+            if (end + n > buf.length) {
+                int keep = mark >= 0 ? mark : start;
+                int used = end - keep;
+                byte[] target = (used + n > buf.length) ? new byte[Math.max(buf.length * 2, used + n)] : buf;
+                System.arraycopy(buf, keep, target, 0, used);
+                buf = target;
+                start -= keep;
+                if (mark >= 0) {
+                    mark = 0;
+                    endAtMark -= keep;
+                }
+                end = used;
+            }
+            src.get(buf, end, n);
+            end += n;
+            notifyAll();
+            return trySchedule();
+        }
+
+        // Takes the right to drain this buffer; false if a worker already holds it
+        synchronized boolean trySchedule() {
+            if (scheduled) return false;
+            scheduled = true;
+            return true;
+        }
+
+        synchronized void finish() {
+            scheduled = false;
+        }
+
+        // Called by the worker between messages; clears the scheduled flag when there is nothing left
+        synchronized boolean hasDataOrFinish() {
+            if (end > start && !closed) return true;
+            scheduled = false;
+            if (start == end && buf.length > 512) {
+                buf = new byte[512]; // do not keep a large message's buffer on an idle session
+                start = end = 0;
+            }
+            return false;
+        }
+
+        synchronized void mark() {
+            mark = start;
+            endAtMark = end;
+        }
+
+        synchronized void unmark() {
+            mark = -1;
+        }
+
+        // Puts back a partial message and clears the scheduled flag, unless bytes arrived since the mark
+        synchronized boolean rewindAndFinish() {
+            start = mark;
+            mark = -1;
+            if (end != endAtMark && !closed) return false;
+            scheduled = false;
+            return true;
+        }
+
+        // Enough read ahead: past MAX_BUFFERED_INPUT with the next message complete, so the worker has work.
+        // A legacy reader consumes on its own thread and is never throttled.
+        synchronized boolean isFull() {
+            return !blocking && end - start >= MAX_BUFFERED_INPUT && frameBuffered();
+        }
+
+        // Whether the length-prefixed binary frame at the read position has fully arrived
+        synchronized boolean frameBuffered() {
+            if (end - start < 4) return false;
+            int length = ((buf[start] & 0xff) << 24) | ((buf[start + 1] & 0xff) << 16)
+                    | ((buf[start + 2] & 0xff) << 8) | (buf[start + 3] & 0xff);
+            return length <= 0 || length > BinaryMessageStream.MAX_FRAME || end - start - 4 >= length; // bad lengths fail in read
+        }
+
+        synchronized void setBlocking() {
+            blocking = true;
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized int available() {
+            return end - start;
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            if (!awaitData()) return -1;
+            return buf[start++] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!awaitData()) return -1;
+            int n = Math.min(len, end - start);
+            System.arraycopy(buf, start, b, off, n);
+            start += n;
+            return n;
+        }
+
+        private boolean awaitData() throws IOException {
+            while (start == end && !closed) {
+                if (!blocking) throw Incomplete.INSTANCE;
+                try {
+                    wait(); // the idle timeout closes the buffer
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            return start < end;
+        }
+    }
+
+    /**
+     * Thrown to a worker that reads past the bytes received so far. It happens on every partial
+     * read, so it is one shared instance without a stack trace; it is unchecked so that it passes
+     * unchanged through the decoders between InboundBuffer and drain.
+     */
+    private static final class Incomplete extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        static final Incomplete INSTANCE = new Incomplete();
+
+        private Incomplete() {
+            super("Incomplete message", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.myapp.server;
+
+import com.myapp.common.Response;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes ONLINE/OFFLINE changes to subscribed admin connections. Changes are
+ * collected for a short window and sent as one event, so a burst of logins
+ * costs each subscriber a single message; only the last state of a user counts.
+ *
+ * Each subscriber has its own small queue, written by its own delivery task, so a
+ * connection that reads slowly only delays itself. One that falls MAX_QUEUED_EVENTS
+ * behind is unsubscribed; its client notices on its next PING and subscribes again,
+ * which gets it a fresh snapshot instead of the missed events.
+ */
+class PresenceBroadcaster {
+    private static final long COALESCE_MS = 250;
+    private static final int MAX_QUEUED_EVENTS = 32;
+
+    private final Map<ClientHandler, Mailbox> subscribers = new ConcurrentHashMap<>();
+    private final Map<Integer, Boolean> pending = new LinkedHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "presence-broadcaster");
+        t.setDaemon(true);
+        return t;
+    });
+    // At most one task per subscriber, blocked only on that subscriber's socket
+    private final ExecutorService delivery = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "presence-delivery");
+        t.setDaemon(true);
+        return t;
+    });
+    private boolean flushScheduled;
+
+    void subscribe(ClientHandler handler) {
+        subscribers.computeIfAbsent(handler, Mailbox::new);
+    }
+
+    void unsubscribe(ClientHandler handler) {
+        subscribers.remove(handler);
+    }
+
+    boolean isSubscribed(ClientHandler handler) {
+        return subscribers.containsKey(handler);
+    }
+
+    void publish(int userId, boolean online) {
+        if (subscribers.isEmpty()) return;
+        synchronized (pending) {
+            pending.put(userId, online);
+            if (flushScheduled) return;
+            flushScheduled = true;
+        }
+        scheduler.schedule(this::flush, COALESCE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        Map<Integer, Boolean> changes;
+        synchronized (pending) {
+            changes = new LinkedHashMap<>(pending);
+            pending.clear();
+            flushScheduled = false;
+        }
+        if (changes.isEmpty()) return;
+
+        StringBuilder online = new StringBuilder();
+        StringBuilder offline = new StringBuilder();
+        for (Map.Entry<Integer, Boolean> e : changes.entrySet()) {
+            StringBuilder sb = e.getValue() ? online : offline;
+            if (sb.length() > 0) sb.append(",");
+            sb.append(e.getKey());
+        }
+        Response event = new Response(true, "PRESENCE");
+        event.setCorrelationId(Response.PUSH_ID);
+        event.put("event", "PRESENCE");
+        event.put("online", online.toString());
+        event.put("offline", offline.toString());
+
+        for (Mailbox m : subscribers.values()) {
+            if (!m.offer(event)) {
+                subscribers.remove(m.handler, m);
+                System.out.println("Presence subscriber dropped: " + MAX_QUEUED_EVENTS + " events behind");
+            }
+        }
+    }
+
+    private final class Mailbox implements Runnable {
+        final ClientHandler handler;
+        private final ArrayDeque<Response> queue = new ArrayDeque<>();
+        private boolean draining;
+
+        Mailbox(ClientHandler handler) {
+            this.handler = handler;
+        }
+
+        // Never blocks; false when the subscriber is too far behind
+        boolean offer(Response event) {
+            synchronized (this) {
+                if (queue.size() >= MAX_QUEUED_EVENTS) return false;
+                queue.add(event);
+                if (draining) return true;
+                draining = true;
+            }
+            delivery.execute(this);
+            return true;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Response event;
+                synchronized (this) {
+                    event = subscribers.get(handler) == this ? queue.poll() : null;
+                    if (event == null) {
+                        queue.clear();
+                        draining = false;
+                        return;
+                    }
+                }
+                if (!handler.push(event)) {
+                    subscribers.remove(handler, this);
+                }
+            }
+        }
+    }
+}
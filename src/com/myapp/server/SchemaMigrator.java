@@ -0,0 +1,153 @@
+package com.myapp.server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Versioned schema changes applied at server startup. Applied versions are recorded in
+ * schema_migrations, so each migration runs once per database; every step also checks
+ * the current schema first, so a migration interrupted half way (MySQL DDL is not
+ * transactional) or an index created by hand is picked up instead of failing.
+ * A named lock keeps two servers starting together from migrating at the same time.
+ *
+ * New migrations go at the end of MIGRATIONS with the next version number; applied ones
+ * must not be edited.
+ */
+class SchemaMigrator {
+    private static final String LOCK_NAME = "user_management.schema_migrations";
+    private static final int LOCK_TIMEOUT_S = 60;
+
+    private interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    private static final class Migration {
+        final int version;
+        final String description;
+        final Step[] steps;
+
+        Migration(int version, String description, Step... steps) {
+            this.version = version;
+            this.description = description;
+            this.steps = steps;
+        }
+    }
+
+    private static final Migration[] MIGRATIONS = {
+        // countRecentFailedAttempts, and the "later success" check of loadRecentFailures
+        new Migration(1, "login_attempts by username, success, attempt_time",
+                createIndex("login_attempts", "idx_login_attempts_user_success_time", "username, success, attempt_time")),
+        // getAuditLogsByUserId; also serves the user_id foreign key
+        new Migration(2, "audit_logs by user_id, created_at",
+                createIndex("audit_logs", "idx_audit_logs_user_time", "user_id, created_at")),
+        // Newest-first audit and login log pages walk these instead of sorting the table
+        new Migration(3, "audit_logs and login_attempts by time for keyset paging",
+                createIndex("audit_logs", "idx_audit_logs_time", "created_at, id"),
+                createIndex("login_attempts", "idx_login_attempts_time", "attempt_time, id")),
+        // loadUsersChangedSince, polled by every admin client
+        new Migration(4, "users by updated_at",
+                createIndex("users", "idx_users_updated_at", "updated_at")),
+        // queryUsers: pages sorted by created_at, status and role filters, prefix search
+        new Migration(5, "users by created_at, status, role, full_name and email for the admin user pages",
+                createIndex("users", "idx_users_created_at", "created_at, id"),
+                createIndex("users", "idx_users_status", "status"),
+                createIndex("users", "idx_users_role", "role"),
+                createIndex("users", "idx_users_full_name", "full_name"),
+                createIndex("users", "idx_users_email", "email")),
+    };
+
+    static void migrate(Connection connection) throws SQLException {
+        lock(connection);
+        try {
+            execute(connection, "CREATE TABLE IF NOT EXISTS schema_migrations ("
+                    + "version INT PRIMARY KEY, "
+                    + "description VARCHAR(200) NOT NULL, "
+                    + "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            Set<Integer> applied = appliedVersions(connection);
+            for (Migration m : MIGRATIONS) {
+                if (applied.contains(m.version)) continue;
+                for (Step step : m.steps) {
+                    step.apply(connection);
+                }
+                try (PreparedStatement stmt = connection.prepareStatement(
+                        "INSERT INTO schema_migrations (version, description) VALUES (?, ?)")) {
+                    stmt.setInt(1, m.version);
+                    stmt.setString(2, m.description);
+                    stmt.executeUpdate();
+                }
+                System.out.println("Applied schema migration " + m.version + ": " + m.description);
+            }
+        } finally {
+            unlock(connection);
+        }
+    }
+
+    private static Step createIndex(String table, String name, String columns) {
+        return connection -> {
+            if (!indexExists(connection, table, name, columns)) {
+                execute(connection, "CREATE INDEX " + name + " ON " + table + " (" + columns + ")");
+            }
+        };
+    }
+
+    // True when the index exists by name, or another index (e.g. a UNIQUE key) starts with the same columns
+    private static boolean indexExists(Connection connection, String table, String name, String columns) throws SQLException {
+        String wanted = columns.replace(" ", "").toLowerCase();
+        String sql = "SELECT index_name, GROUP_CONCAT(column_name ORDER BY seq_in_index) FROM information_schema.statistics "
+                + "WHERE table_schema = DATABASE() AND table_name = ? GROUP BY index_name";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String existing = rs.getString(2).toLowerCase() + ",";
+                    if (name.equalsIgnoreCase(rs.getString(1)) || existing.startsWith(wanted + ",")) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Set<Integer> appliedVersions(Connection connection) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM schema_migrations")) {
+            while (rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    private static void lock(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, LOCK_TIMEOUT_S);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for another server to finish schema migrations");
+                }
+            }
+        }
+    }
+
+    private static void unlock(Connection connection) {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            // the lock goes away with the session anyway
+            System.err.println("Error releasing migration lock: " + e.getMessage());
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
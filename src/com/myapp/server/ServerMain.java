@@ -1,8 +1,12 @@
 package com.myapp.server;
 
+import com.myapp.common.CompressionStats;
+
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.Set;
 
 public class ServerMain {
@@ -30,15 +34,50 @@ public class ServerMain {
         }
     }
     
+    // Executor for correlated requests answered out of order by the blocking transports,
+    // and for the parts of a BATCH on every transport
+    private static volatile ExecutorService requestExecutor;
+
+    static ExecutorService getRequestExecutor() {
+        return requestExecutor;
+    }
+
+    // Virtual threads need JDK 21; looked up reflectively so the server still runs on older JDKs
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Virtual threads require JDK 21+, falling back to a cached thread pool");
+            return Executors.newCachedThreadPool();
+        }
+    }
+    
+    // Admin connections that receive presence changes instead of polling GET_ONLINE_USERS
+    private static final PresenceBroadcaster presence = new PresenceBroadcaster();
+
+    static void subscribePresence(ClientHandler handler) {
+        presence.subscribe(handler);
+    }
+
+    static void unsubscribePresence(ClientHandler handler) {
+        presence.unsubscribe(handler);
+    }
+
+    static boolean isPresenceSubscribed(ClientHandler handler) {
+        return presence.isSubscribed(handler);
+    }
+    
     public static void addOnlineUser(int userId, String username, ClientHandler handler) {
         onlineUsers.put(userId, new UserConnection(username, handler));
         System.out.println("User " + username + " (ID: " + userId + ") is now ONLINE");
+        presence.publish(userId, true);
     }
     
     public static void removeOnlineUser(int userId) {
         UserConnection removed = onlineUsers.remove(userId);
         if (removed != null) {
             System.out.println("User " + removed.username + " (ID: " + userId + ") is now OFFLINE");
+            presence.publish(userId, false);
         }
     }
     
@@ -62,6 +101,7 @@ public class ServerMain {
         onlineUsers.entrySet().removeIf(entry -> {
             if (entry.getValue().isExpired(timeoutMs)) {
                 System.out.println("Removing expired connection for user ID: " + entry.getKey());
+                presence.publish(entry.getKey(), false);
                 return true;
             }
             return false;
@@ -74,6 +114,7 @@ public class ServerMain {
         
         try {
             db = new MySQLDatabase();
+            db.migrateSchema();
             
             // ensure admin exists
             if (!db.findByUsername("admin").isPresent()) {
@@ -87,14 +128,35 @@ public class ServerMain {
                 System.out.println("Created default admin / password admin123");
             }
 
-            AuthService auth = new AuthService(db);
+            // Audit and login-attempt inserts are batched by a background writer.
+            // -Daudit.durability=async answers before the batch is committed
+            LogWriter logs = new LogWriter(db,
+                    Integer.getInteger("audit.queue", 10000),
+                    Integer.getInteger("audit.batchSize", 200),
+                    Long.getLong("audit.flushMs", 50),
+                    !"async".equalsIgnoreCase(System.getProperty("audit.durability", "sync")));
+            Runtime.getRuntime().addShutdownHook(new Thread(logs::close, "log-writer-flush"));
+
+            AuthService auth = new AuthService(db, logs);
 
             // Start cleanup thread for expired connections
+            final MySQLDatabase database = db;
             Thread cleanupThread = new Thread(() -> {
+                long lastCompressed = 0;
+                int cycles = 0;
                 while (true) {
                     try {
                         Thread.sleep(30000); // Check every 30 seconds
                         cleanupExpiredConnections(120000); // Remove connections idle for 2 minutes
+                        if (CompressionStats.getAttempts() != lastCompressed) {
+                            lastCompressed = CompressionStats.getAttempts();
+                            System.out.println("Wire " + CompressionStats.summary());
+                        }
+                        if (++cycles % 10 == 0) {
+                            System.out.println(database.poolSummary()); // every 5 minutes
+                            System.out.println(database.userCacheSummary());
+                            System.out.println(auth.loginLatencySummary());
+                        }
                     } catch (InterruptedException e) {
                         break;
                     }
@@ -103,8 +165,34 @@ public class ServerMain {
             cleanupThread.setDaemon(true);
             cleanupThread.start();
 
+            // -Dserver.transport=nio switches to the selector-based event loop,
+            // -Dserver.transport=virtual runs each ClientHandler on its own virtual thread
+            String transport = System.getProperty("server.transport", "thread");
+            if ("nio".equalsIgnoreCase(transport)) {
+                int cpus = Runtime.getRuntime().availableProcessors();
+                int ioThreads = Integer.getInteger("server.ioThreads", Math.max(1, cpus / 2));
+                int workerThreads = Integer.getInteger("server.workerThreads", cpus * 4);
+                int workerQueue = Integer.getInteger("server.workerQueue", 1024);
+                // Batches fan out here too, so their parts do not run one by one inline
+                requestExecutor = newVirtualThreadExecutor();
+                new NioServer(port, db, auth, ioThreads, workerThreads, workerQueue, requestExecutor).serve();
+                return;
+            }
+
+            ExecutorService connectionExecutor = null;
+            if ("virtual".equalsIgnoreCase(transport)) {
+                connectionExecutor = newVirtualThreadExecutor();
+                requestExecutor = connectionExecutor;
+            } else {
+                requestExecutor = Executors.newCachedThreadPool(r -> {
+                    Thread t = new Thread(r, "request-worker");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+
             try (ServerSocket ss = new ServerSocket(port)) {
-                System.out.println("Server listening on port " + port);
+                System.out.println("Server listening on port " + port + (connectionExecutor != null ? " (virtual threads)" : ""));
                 while (true) {
                     Socket s = ss.accept();
                     System.out.println("Connected: " + s.getInetAddress());
@@ -113,7 +201,11 @@ public class ServerMain {
                     s.setSoTimeout(300000); // 5 minutes timeout
                     
                     ClientHandler h = new ClientHandler(s, db, auth);
-                    new Thread(h).start();
+                    if (connectionExecutor != null) {
+                        connectionExecutor.execute(h);
+                    } else {
+                        new Thread(h).start();
+                    }
                 }
             }
         } catch (java.sql.SQLException e) {
@@ -0,0 +1,27 @@
+package com.myapp.server;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks picked by key hash. Operations on the same key always share a
+ * lock; unrelated keys only collide when they land on the same stripe, and the memory
+ * used does not grow with the number of keys.
+ */
+class StripedLocks {
+    private final ReentrantLock[] stripes;
+
+    StripedLocks(int count) {
+        int n = Integer.highestOneBit(Math.max(1, count - 1)) << 1; // next power of two
+        stripes = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    Lock get(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return stripes[h & (stripes.length - 1)];
+    }
+}
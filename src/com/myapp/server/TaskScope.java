@@ -0,0 +1,44 @@
+package com.myapp.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs the read-only parts of one BATCH concurrently. The caller waits on each forked
+ * future itself, so one failing part only fails its own answer; closing the scope cancels
+ * whatever is still running, so no part outlives the request. Without an executor (NIO
+ * transport) parts run inline when forked.
+ */
+class TaskScope implements AutoCloseable {
+    private final ExecutorService executor;
+    private final List<Future<?>> forks = new ArrayList<>();
+
+    TaskScope(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    <T> Future<T> fork(Callable<T> task) {
+        Future<T> f;
+        if (executor == null) {
+            FutureTask<T> ft = new FutureTask<>(task);
+            ft.run();
+            f = ft;
+        } else {
+            f = executor.submit(task);
+        }
+        forks.add(f);
+        return f;
+    }
+
+    private void cancelAll() {
+        for (Future<?> f : forks) {
+            f.cancel(true);
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+    }
+}
@@ -0,0 +1,84 @@
+package com.myapp.server;
+
+import com.myapp.common.User;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded read-through cache of users by id, with a username index. It holds copies, so
+ * callers may modify what they get back. Writes invalidate the entry and bump a generation;
+ * a row loaded before that is not cached, so this server always reads its own writes.
+ */
+class UserCache {
+    private final Map<Integer, User> byId;
+    private final Map<String, Integer> idByUsername = new HashMap<>();
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    UserCache(int capacity) {
+        this.byId = new LinkedHashMap<Integer, User>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, User> eldest) {
+                if (size() <= capacity) return false;
+                idByUsername.remove(key(eldest.getValue().getUsername()));
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    // Taken before loading from the database and passed back to put()
+    synchronized long generation() {
+        return generation;
+    }
+
+    synchronized User getById(int id) {
+        return hit(byId.get(id));
+    }
+
+    synchronized User getByUsername(String username) {
+        Integer id = idByUsername.get(key(username));
+        return hit(id != null ? byId.get(id) : null);
+    }
+
+    synchronized void put(User user, long loadedAt) {
+        if (loadedAt != generation) return; // written meanwhile, the row may be stale
+        User old = byId.put(user.getId(), new User(user));
+        if (old != null) idByUsername.remove(key(old.getUsername()));
+        idByUsername.put(key(user.getUsername()), user.getId());
+    }
+
+    synchronized void invalidate(int id) {
+        generation++;
+        User old = byId.remove(id);
+        if (old != null) idByUsername.remove(key(old.getUsername()));
+    }
+
+    private User hit(User cached) {
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new User(cached);
+    }
+
+    synchronized String summary() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return String.format("user cache: %d entries, %d hits, %d misses (%.1f%% hit rate), %d evictions",
+                byId.size(), h, misses.sum(), total == 0 ? 0.0 : 100.0 * h / total, evictions.sum());
+    }
+
+    // Usernames compare case-insensitively in MySQL
+    private static String key(String username) {
+        return username == null ? "" : username.toLowerCase(Locale.ROOT);
+    }
+}
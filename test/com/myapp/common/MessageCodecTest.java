@@ -0,0 +1,127 @@
+package com.myapp.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Round-trips LOGIN, PING and a 100-user ADMIN_LIST_USERS answer through the legacy Java
+ * serialization stream and the binary stream, checks both decode to the same message, and
+ * reports bytes and encode/decode time per message for each.
+ *   java -cp out com.myapp.common.MessageCodecTest
+ */
+public class MessageCodecTest {
+    private static final int WARMUP = 20_000;
+    private static final int MESSAGES = 20_000;
+
+    private interface Codec {
+        MessageStream writer(OutputStream out) throws IOException;
+        MessageStream reader(InputStream in) throws IOException;
+    }
+
+    private static final Codec OBJECT = new Codec() {
+        @Override
+        public MessageStream writer(OutputStream out) throws IOException {
+            return new ObjectMessageStream(new ByteArrayInputStream(streamHeader()), out);
+        }
+
+        @Override
+        public MessageStream reader(InputStream in) throws IOException {
+            return new ObjectMessageStream(in, OutputStream.nullOutputStream());
+        }
+    };
+
+    private static final Codec BINARY = new Codec() {
+        @Override
+        public MessageStream writer(OutputStream out) {
+            return new BinaryMessageStream(new ByteArrayInputStream(new byte[0]), out);
+        }
+
+        @Override
+        public MessageStream reader(InputStream in) {
+            return new BinaryMessageStream(in, OutputStream.nullOutputStream());
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        Request login = new Request("LOGIN");
+        login.put("username", "nguyenvana");
+        login.put("password", "matkhau123");
+        login.setCorrelationId(42);
+        Request ping = new Request("PING");
+        ping.setCorrelationId(43);
+        StringBuilder rows = new StringBuilder();
+        for (int id = 1; id <= 100; id++) {
+            rows.append(id).append(",user").append(id).append(",Nguyễn Văn An ").append(id)
+                .append(",user").append(id).append("@gmail.com,,USER,ACTIVE,OFFLINE,2025-03-01 08:00:00,2024-01-01 00:00:00;");
+        }
+        Response users = new Response(true, "OK");
+        users.put("users", rows.toString());
+        users.put("delta", "false");
+        users.put("total", "100");
+        users.put("watermark", "2025-03-01 08:00:00.0");
+        users.setCorrelationId(44);
+
+        System.out.println("JDK " + System.getProperty("java.version") + ", " + MESSAGES + " messages each");
+        measure("LOGIN", login);
+        measure("PING", ping);
+        measure("ADMIN_LIST_USERS", users);
+        System.out.println("MessageCodecTest passed");
+    }
+
+    private static void measure(String name, Object message) throws Exception {
+        for (String codecName : new String[] { "object", "binary" }) {
+            Codec codec = "object".equals(codecName) ? OBJECT : BINARY;
+            run(codec, message, WARMUP);
+            long[] result = run(codec, message, MESSAGES);
+            System.out.printf("%-17s %-7s %7d bytes  encode %7.0f ns  decode %7.0f ns%n", name, codecName,
+                    result[0] / MESSAGES, (double) result[1] / MESSAGES, (double) result[2] / MESSAGES);
+        }
+    }
+
+    // Returns {bytes written after the stream header, encode nanos, decode nanos}
+    private static long[] run(Codec codec, Object message, int count) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MessageStream writer = codec.writer(bytes);
+        int header = bytes.size();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) writer.write(message);
+        long encode = System.nanoTime() - start;
+        long size = bytes.size() - header;
+
+        MessageStream reader = codec.reader(new ByteArrayInputStream(bytes.toByteArray()));
+        Object last = null;
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) last = reader.read();
+        long decode = System.nanoTime() - start;
+        check(same(message, last), "round trip changed " + message);
+        return new long[] { size, encode, decode };
+    }
+
+    private static boolean same(Object a, Object b) {
+        if (a instanceof Request && b instanceof Request) {
+            Request x = (Request) a, y = (Request) b;
+            return x.getAction().equals(y.getAction()) && x.getCorrelationId() == y.getCorrelationId()
+                    && x.getData().equals(y.getData());
+        }
+        if (a instanceof Response && b instanceof Response) {
+            Response x = (Response) a, y = (Response) b;
+            return x.isSuccess() == y.isSuccess() && x.getMessage().equals(y.getMessage())
+                    && x.getCorrelationId() == y.getCorrelationId() && x.getData().equals(y.getData());
+        }
+        return false;
+    }
+
+    private static byte[] streamHeader() throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        new ObjectOutputStream(header).flush();
+        return header.toByteArray();
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) throw new AssertionError(what);
+    }
+}
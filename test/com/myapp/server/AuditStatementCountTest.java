@@ -0,0 +1,54 @@
+package com.myapp.server;
+
+import com.myapp.common.Request;
+import com.myapp.common.Response;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.myapp.server.FakeDatabase.check;
+import static com.myapp.server.FakeDatabase.row;
+
+/**
+ * A page of GET_AUDITS costs one statement however many users its rows belong to: user data
+ * comes joined with the audit rows, not looked up once per row.
+ */
+public class AuditStatementCountTest {
+    public static void main(String[] args) throws Exception {
+        List<Map<String, Object>> audits = new ArrayList<>();
+        LocalDateTime t = LocalDateTime.of(2025, 3, 1, 8, 0);
+        for (int id = 40; id >= 1; id--) {
+            // 20 distinct users, one deleted (no joined name) and some system rows
+            Integer userId = id % 10 == 0 ? null : id % 20;
+            audits.add(row("id", id, "user_id", userId, "action", "LOGIN_SUCCESS", "details", "row " + id,
+                    "created_at", t.minusMinutes(40 - id),
+                    "user_name", userId == null || userId == 13 ? null : "user" + userId, "user_role", "USER"));
+        }
+        FakeDatabase fake = new FakeDatabase((sql, params) -> {
+            if (sql.startsWith("SELECT a.*, u.username AS user_name, u.role AS user_role FROM audit_logs a")) {
+                int limit = sql.contains("LIMIT ?") ? (Integer) params.get(params.size() - 1) : audits.size();
+                return audits.subList(0, Math.min(limit, audits.size()));
+            }
+            throw new AssertionError("Unexpected statement: " + sql);
+        });
+        ConnectionPool pool = fake.pool();
+        ClientHandler handler = new ClientHandler(new MySQLDatabase(pool), null);
+
+        for (String pageSize : new String[] { null, "25" }) {
+            Request req = new Request("GET_AUDITS");
+            if (pageSize != null) req.put("pageSize", pageSize);
+            long before = pool.statementCount();
+            Response resp = handler.process(req, "127.0.0.1");
+            long statements = pool.statementCount() - before;
+
+            check(resp.isSuccess(), resp.getMessage());
+            String[] lines = resp.getData().get("audits").split("\n");
+            check(lines.length == (pageSize == null ? 40 : 25), "rows: " + lines.length);
+            check(resp.getData().get("audits").contains("User ID 13 (Deleted)"), "deleted user not rendered");
+            check(statements == 1, "pageSize=" + pageSize + " ran " + statements + " statements, expected 1");
+        }
+        System.out.println("AuditStatementCountTest passed");
+    }
+}
@@ -0,0 +1,231 @@
+package com.myapp.server;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Scripted stand-in for MySQL in the tests: every statement goes to a Responder that answers
+ * it from in-memory rows. Time values behave like Connector/J with serverTimezone=UTC: a bound
+ * Timestamp reaches the responder as its UTC wall-clock time, getTimestamp() turns a stored
+ * UTC wall-clock time back into the same instant, and getString() returns it as stored.
+ *
+ * Tests are plain main() programs, no framework needed:
+ *   javac -encoding UTF-8 -d out $(find src test -name '*.java')
+ *   java -cp out com.myapp.server.HistoryCursorTest
+ */
+class FakeDatabase {
+    private static final AtomicInteger ids = new AtomicInteger();
+    private static final Map<String, FakeDatabase> byUrl = new ConcurrentHashMap<>();
+
+    static {
+        try {
+            DriverManager.registerDriver(new FakeDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Answers one statement; return null for an update. Timestamps arrive as UTC LocalDateTime.
+     * A commit arrives as the statement "COMMIT" with no parameters, also after each update
+     * made outside a transaction.
+     */
+    interface Responder {
+        List<Map<String, Object>> answer(String sql, List<Object> params) throws SQLException;
+    }
+
+    final String url = "jdbc:fake:" + ids.incrementAndGet();
+    private final Responder responder;
+
+    FakeDatabase(Responder responder) {
+        this.responder = responder;
+        byUrl.put(url, this);
+    }
+
+    ConnectionPool pool() throws SQLException {
+        return pool(4, 1000);
+    }
+
+    ConnectionPool pool(int maxSize, long borrowTimeoutMs) throws SQLException {
+        return new ConnectionPool(url, "test", "", 0, maxSize, borrowTimeoutMs, 60000, 0);
+    }
+
+    static Map<String, Object> row(Object... keysAndValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            row.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return row;
+    }
+
+    static void check(boolean ok, String what) {
+        if (!ok) throw new AssertionError(what);
+    }
+
+    private Connection connect() {
+        boolean[] closed = new boolean[1];
+        boolean[] autoCommit = { true };
+        return (Connection) Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            return statement((String) args[0], autoCommit);
+                        case "setAutoCommit":
+                            autoCommit[0] = (Boolean) args[0];
+                            return null;
+                        case "commit":
+                            responder.answer("COMMIT", Collections.emptyList());
+                            return null;
+                        case "getAutoCommit":
+                            return autoCommit[0];
+                        case "isValid":
+                            return !closed[0];
+                        case "isClosed":
+                            return closed[0];
+                        case "close":
+                            closed[0] = true;
+                            return null;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private PreparedStatement statement(String sql, boolean[] autoCommit) {
+        List<Object> params = new ArrayList<>();
+        List<List<Object>> batch = new ArrayList<>();
+        return (PreparedStatement) Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer) {
+                        int index = (Integer) args[0];
+                        while (params.size() < index) params.add(null);
+                        Object value = args[1];
+                        if (value instanceof Timestamp) {
+                            // The driver sends the instant as wall-clock time in the server zone
+                            value = LocalDateTime.ofInstant(((Timestamp) value).toInstant(), ZoneOffset.UTC);
+                        }
+                        params.set(index - 1, value);
+                        return null;
+                    }
+                    switch (name) {
+                        case "executeQuery": {
+                            List<Map<String, Object>> rows = responder.answer(sql, params);
+                            return resultSet(rows != null ? rows : Collections.emptyList());
+                        }
+                        case "executeUpdate":
+                            responder.answer(sql, params);
+                            if (autoCommit[0]) responder.answer("COMMIT", Collections.emptyList());
+                            return 1;
+                        case "addBatch":
+                            batch.add(new ArrayList<>(params));
+                            return null;
+                        case "executeBatch": {
+                            int[] counts = new int[batch.size()];
+                            for (int i = 0; i < counts.length; i++) {
+                                responder.answer(sql, batch.get(i));
+                                counts[i] = 1;
+                            }
+                            batch.clear();
+                            if (autoCommit[0]) responder.answer("COMMIT", Collections.emptyList());
+                            return counts;
+                        }
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static ResultSet resultSet(List<Map<String, Object>> rows) {
+        int[] at = { -1 };
+        return (ResultSet) Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("next")) return ++at[0] < rows.size();
+                    if (!name.startsWith("get") || args == null || args.length == 0) return defaultValue(method.getReturnType());
+
+                    Map<String, Object> row = rows.get(at[0]);
+                    Object value = args[0] instanceof Integer
+                            ? new ArrayList<>(row.values()).get((Integer) args[0] - 1)
+                            : row.get((String) args[0]);
+                    switch (name) {
+                        case "getTimestamp":
+                            return value == null ? null : Timestamp.from(((LocalDateTime) value).toInstant(ZoneOffset.UTC));
+                        case "getString":
+                            return value instanceof LocalDateTime ? Timestamp.valueOf((LocalDateTime) value).toString()
+                                    : value == null ? null : value.toString();
+                        case "getInt":
+                            return value == null ? 0 : ((Number) value).intValue();
+                        case "getLong":
+                            return value == null ? 0L : ((Number) value).longValue();
+                        case "getBoolean":
+                            return value != null && (Boolean) value;
+                        default:
+                            return value;
+                    }
+                });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+
+    private static final class FakeDriver implements Driver {
+        @Override
+        public Connection connect(String url, Properties info) {
+            FakeDatabase db = byUrl.get(url);
+            return db != null ? db.connect() : null;
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:fake:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.myapp.server;
+
+import com.myapp.common.Request;
+import com.myapp.common.Response;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.stream.Collectors;
+
+import static com.myapp.server.FakeDatabase.check;
+import static com.myapp.server.FakeDatabase.row;
+
+/**
+ * Paging through GET_USER_HISTORY must return every row exactly once, also when the JVM runs
+ * in a different time zone than the database connection and two rows share the time at a
+ * page boundary.
+ */
+public class HistoryCursorTest {
+    private static final int USER_ID = 7;
+
+    public static void main(String[] args) throws Exception {
+        TimeZone original = TimeZone.getDefault();
+        try {
+            for (String zone : new String[] { "UTC", "Asia/Ho_Chi_Minh", "America/New_York" }) {
+                TimeZone.setDefault(TimeZone.getTimeZone(zone));
+                pagesCoverEveryRowOnce(zone);
+            }
+        } finally {
+            TimeZone.setDefault(original);
+        }
+        System.out.println("HistoryCursorTest passed");
+    }
+
+    private static void pagesCoverEveryRowOnce(String zone) throws Exception {
+        // Stored as UTC wall-clock time, newest first by (created_at, id): 6 5 4 3 2 1
+        LocalDateTime base = LocalDateTime.of(2025, 3, 1, 8, 0, 0, 250_000_000);
+        List<Map<String, Object>> audits = new ArrayList<>();
+        audits.add(audit(1, base));
+        audits.add(audit(2, base.plusMinutes(1)));
+        audits.add(audit(3, base.plusMinutes(2))); // 3 and 4 tie across the first page boundary
+        audits.add(audit(4, base.plusMinutes(2)));
+        audits.add(audit(5, base.plusHours(9)));
+        audits.add(audit(6, base.plusHours(9).plusNanos(1000)));
+
+        FakeDatabase fake = new FakeDatabase((sql, params) -> {
+            if (sql.startsWith("SELECT * FROM users WHERE username = ?")) {
+                List<Map<String, Object>> users = new ArrayList<>();
+                if ("alice".equals(params.get(0))) users.add(row("id", USER_ID, "username", "alice", "role", "USER"));
+                return users;
+            }
+            if (sql.startsWith("SELECT * FROM audit_logs WHERE user_id = ?")) return historyPage(audits, params);
+            throw new AssertionError("Unexpected statement: " + sql);
+        });
+        ClientHandler handler = new ClientHandler(new MySQLDatabase(fake.pool()), null);
+
+        List<String> seen = new ArrayList<>();
+        String cursor = "";
+        for (int page = 0; page < 10; page++) {
+            Request req = new Request("GET_USER_HISTORY");
+            req.put("username", "alice");
+            req.put("pageSize", "3");
+            req.put("cursor", cursor);
+            Response resp = handler.process(req, "127.0.0.1");
+            check(resp.isSuccess(), zone + ": " + resp.getMessage());
+            for (String line : resp.getData().get("history").split("\n")) {
+                if (!line.isEmpty()) seen.add(line.split("\\|")[3]);
+            }
+            cursor = resp.getData().get("nextCursor");
+            if (cursor.isEmpty()) break;
+        }
+        List<String> expected = new ArrayList<>();
+        for (int id = 6; id >= 1; id--) expected.add("row " + id);
+        check(seen.equals(expected), zone + ": expected " + expected + " but paged " + seen);
+    }
+
+    private static Map<String, Object> audit(int id, LocalDateTime createdAt) {
+        return row("id", id, "user_id", USER_ID, "action", "LOGIN_SUCCESS", "details", "row " + id, "created_at", createdAt);
+    }
+
+    // WHERE user_id = ? [AND created_at <= ? AND (created_at < ? OR id < ?)] ORDER BY created_at DESC, id DESC LIMIT ?
+    private static List<Map<String, Object>> historyPage(List<Map<String, Object>> audits, List<Object> params) {
+        int userId = (Integer) params.get(0);
+        LocalDateTime beforeTime = params.size() > 2 ? (LocalDateTime) params.get(1) : null;
+        int beforeId = params.size() > 2 ? (Integer) params.get(3) : 0;
+        int limit = (Integer) params.get(params.size() - 1);
+        Comparator<Map<String, Object>> newestFirst = Comparator
+                .comparing((Map<String, Object> r) -> (LocalDateTime) r.get("created_at"))
+                .thenComparing(r -> (Integer) r.get("id"))
+                .reversed();
+        return audits.stream()
+                .filter(r -> (Integer) r.get("user_id") == userId)
+                .filter(r -> {
+                    if (beforeTime == null) return true;
+                    LocalDateTime t = (LocalDateTime) r.get("created_at");
+                    return !t.isAfter(beforeTime) && (t.isBefore(beforeTime) || (Integer) r.get("id") < beforeId);
+                })
+                .sorted(newestFirst)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,136 @@
+package com.myapp.server;
+
+import com.myapp.common.BinaryMessageStream;
+import com.myapp.common.Response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import static com.myapp.server.FakeDatabase.check;
+
+/**
+ * Holds N idle sessions (handshake and one PING each) on the thread-per-connection transport
+ * and on the NIO transport in turn, and reports the threads and heap each one keeps for them.
+ * Thread stacks live outside the heap, so the thread count is the number that matters there;
+ * the heap figure includes the test's own client sockets, the same for both transports.
+ *   java -cp out -Dconnections=5000 com.myapp.server.IdleConnectionsTest
+ */
+public class IdleConnectionsTest {
+    interface Transport {
+        int start() throws IOException; // returns the port
+    }
+
+    public static void main(String[] args) throws Exception {
+        int n = Integer.getInteger("connections", 1000);
+        long[] threads = measure("thread", n, IdleConnectionsTest::startThreadTransport);
+        long[] nio = measure("nio", n, IdleConnectionsTest::startNioTransport);
+        check(threads[0] >= n, "thread transport: " + threads[0] + " threads for " + n + " sessions");
+        check(nio[0] < 16, "nio transport: " + nio[0] + " threads for " + n + " sessions");
+        System.out.println("IdleConnectionsTest passed");
+    }
+
+    static int startThreadTransport() throws IOException {
+        return startBlockingTransport(null, null);
+    }
+
+    // Same accept loop as ServerMain: a new thread per connection, or the given executor (-Dserver.transport=virtual)
+    static int startBlockingTransport(MySQLDatabase db, Executor connectionExecutor) throws IOException {
+        ServerSocket ss = new ServerSocket(0);
+        Thread t = new Thread(() -> {
+            try {
+                while (true) {
+                    Socket s = ss.accept();
+                    s.setSoTimeout(300000);
+                    ClientHandler h = new ClientHandler(s, db, null);
+                    if (connectionExecutor != null) {
+                        connectionExecutor.execute(h);
+                    } else {
+                        new Thread(h).start();
+                    }
+                }
+            } catch (IOException e) {
+                // test over
+            }
+        }, "thread-accept");
+        t.setDaemon(true);
+        t.start();
+        return ss.getLocalPort();
+    }
+
+    static int startNioTransport() throws IOException {
+        return startNioTransport(null);
+    }
+
+    static int startNioTransport(MySQLDatabase db) throws IOException {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        NioServer server = new NioServer(port, db, null, 1, 4, 1024, Executors.newCachedThreadPool(r -> {
+            Thread w = new Thread(r, "nio-waiting");
+            w.setDaemon(true);
+            return w;
+        }));
+        Thread t = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "nio-accept");
+        t.setDaemon(true);
+        t.start();
+        return port;
+    }
+
+    // Returns the threads and heap bytes added while the sessions are open
+    static long[] measure(String name, int n, Transport transport) throws Exception {
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapBefore = usedHeap();
+        PrintStream out = System.out;
+        List<Socket> sessions = new ArrayList<>();
+        long[] usage;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // one log line per connection
+        try {
+            int port = transport.start();
+            for (int i = 0; i < n; i++) {
+                Socket s = NioServerTest.connect(port);
+                sessions.add(s);
+                OutputStream sOut = s.getOutputStream();
+                sOut.write(NioServerTest.handshake());
+                sOut.write(NioServerTest.frame(NioServerTest.ping(i + 1)));
+                sOut.flush();
+                BinaryMessageStream stream = NioServerTest.negotiated(s);
+                check(((Response) stream.read()).getCorrelationId() == i + 1, name + ": session " + i + " not answered");
+            }
+            usage = new long[] {
+                ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore,
+                usedHeap() - heapBefore
+            };
+        } finally {
+            for (Socket s : sessions) s.close();
+            Thread.sleep(500); // let the closed sessions end before the next transport
+            System.setOut(out);
+        }
+        System.out.printf("%-6s %d idle sessions: %d threads, %d KB heap (%.1f KB each)%n",
+                name, n, usage[0], usage[1] / 1024, usage[1] / 1024.0 / n);
+        return usage;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
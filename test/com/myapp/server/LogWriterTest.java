@@ -0,0 +1,94 @@
+package com.myapp.server;
+
+import com.myapp.common.AuditLog;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.myapp.server.FakeDatabase.check;
+
+/**
+ * A record the database rejects fails only the caller who logged it, not the others that
+ * shared its group commit, and logging after close() fails at once instead of hanging.
+ */
+public class LogWriterTest {
+    public static void main(String[] args) throws Exception {
+        CountDownLatch firstWrite = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FakeDatabase fake = new FakeDatabase((sql, params) -> {
+            if (sql.startsWith("INSERT INTO audit_logs")) {
+                if ("bad".equals(params.get(2))) {
+                    throw new SQLIntegrityConstraintViolationException("Cannot add or update a child row", "23000");
+                }
+                if (firstWrite.getCount() > 0) {
+                    // Hold the first commit so everyone else queues up behind it
+                    firstWrite.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            return null;
+        });
+        MySQLDatabase db = new MySQLDatabase(fake.pool());
+        LogWriter logs = new LogWriter(db, 100, 50, 50, true);
+
+        ExecutorService callers = Executors.newFixedThreadPool(21);
+        Future<?> first = callers.submit(() -> {
+            logs.addAudit(audit("first"));
+            return null;
+        });
+        check(firstWrite.await(5, TimeUnit.SECONDS), "first write not started");
+        List<Future<?>> others = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String details = i == 7 ? "bad" : "row " + i;
+            others.add(callers.submit(() -> {
+                logs.addAudit(audit(details));
+                return null;
+            }));
+        }
+        Thread.sleep(300); // all 20 queued behind the first commit, to share the next one
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        int failed = 0;
+        for (int i = 0; i < others.size(); i++) {
+            try {
+                others.get(i).get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                check(i == 7 && e.getCause() instanceof SQLException, "record " + i + " failed: " + e.getCause());
+                failed++;
+            }
+        }
+        check(failed == 1, "the rejected record did not fail its caller");
+        callers.shutdown();
+
+        logs.close();
+        long start = System.nanoTime();
+        try {
+            logs.addAudit(audit("late"));
+            check(false, "logged after close");
+        } catch (SQLException expected) {
+            check(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "rejecting after close took too long");
+        }
+        System.out.println("LogWriterTest passed");
+    }
+
+    private static AuditLog audit(String details) {
+        AuditLog a = new AuditLog();
+        a.setUserId(1);
+        a.setAction("TEST");
+        a.setDetails(details);
+        return a;
+    }
+}
@@ -0,0 +1,110 @@
+package com.myapp.server;
+
+import com.myapp.common.Utils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.myapp.server.FakeDatabase.check;
+import static com.myapp.server.FakeDatabase.row;
+
+/**
+ * THREADS clients log in to THREADS different accounts at once, first with every login
+ * behind one global lock, as AuthService.login was when it was synchronized, then with the
+ * per-account StripedLocks it uses now. Looking a user up takes SELECT_MS and committing
+ * the login's log rows COMMIT_MS in FakeDatabase. Reports logins per second and p50/p99.
+ *   java -cp out -Dthreads=1 com.myapp.server.LoginContentionTest
+ */
+public class LoginContentionTest {
+    private static final int THREADS = Integer.getInteger("threads", 64);
+    private static final int LOGINS = 20; // per thread
+    private static final long SELECT_MS = 1;
+    private static final long COMMIT_MS = 2;
+
+    public static void main(String[] args) throws Exception {
+        String hash = Utils.sha256("secret");
+        FakeDatabase fake = new FakeDatabase((sql, params) -> {
+            if (sql.startsWith("SELECT * FROM users WHERE username = ?")) {
+                pause(SELECT_MS);
+                String name = (String) params.get(0);
+                int id = Integer.parseInt(name.substring("user".length())) + 1;
+                return Collections.singletonList(row("id", id, "username", name, "password_hash", hash,
+                        "full_name", "User " + id, "email", name + "@example.com", "avatar", null, "role", "USER",
+                        "status", "ACTIVE", "created_at", LocalDateTime.of(2025, 1, 1, 0, 0),
+                        "updated_at", null, "last_login", null));
+            }
+            if (sql.equals("COMMIT")) pause(COMMIT_MS);
+            return Collections.emptyList();
+        });
+        MySQLDatabase db = new MySQLDatabase(fake.pool(THREADS, 60000));
+        LogWriter logs = new LogWriter(db, 10000, 200, 50, true);
+        AuthService auth = new AuthService(db, logs);
+
+        System.out.println("JDK " + System.getProperty("java.version") + ", "
+                + Runtime.getRuntime().availableProcessors() + " CPU, " + THREADS + " threads x " + LOGINS
+                + " logins, " + SELECT_MS + " ms per user lookup, " + COMMIT_MS + " ms per commit");
+        Object global = new Object();
+        run("global", (user) -> {
+            synchronized (global) {
+                return auth.login(user, "secret", "127.0.0.1");
+            }
+        });
+        run("striped", (user) -> auth.login(user, "secret", "127.0.0.1"));
+        logs.close();
+        System.out.println("LoginContentionTest passed");
+    }
+
+    private interface Login {
+        AuthService.AuthResult login(String username) throws Exception;
+    }
+
+    private static void run(String name, Login login) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(THREADS);
+        try {
+            drive(clients, login, 1); // warm-up, not timed
+            long start = System.nanoTime();
+            long[] latencies = drive(clients, login, LOGINS);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-8s %6.0f logins/s  p50 %6.2f ms  p99 %7.2f ms%n", name,
+                    latencies.length / (elapsed / 1e9), latencies[latencies.length / 2] / 1e6,
+                    latencies[(int) (latencies.length * 0.99)] / 1e6);
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    // Each client logs in to its own account; returns the sorted login times
+    private static long[] drive(ExecutorService clients, Login login, int rounds) throws Exception {
+        long[] latencies = new long[THREADS * rounds];
+        List<Future<?>> done = new ArrayList<>();
+        for (int c = 0; c < THREADS; c++) {
+            int client = c;
+            done.add(clients.submit(() -> {
+                for (int round = 0; round < rounds; round++) {
+                    long t0 = System.nanoTime();
+                    AuthService.AuthResult r = login.login("user" + client);
+                    latencies[round * THREADS + client] = System.nanoTime() - t0;
+                    check(r.ok, "user" + client + ": " + r.msg);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : done) f.get();
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static void pause(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
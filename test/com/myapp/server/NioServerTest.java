@@ -0,0 +1,168 @@
+package com.myapp.server;
+
+import com.myapp.common.BinaryMessageStream;
+import com.myapp.common.Request;
+import com.myapp.common.Response;
+import com.myapp.common.WireProtocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.myapp.server.FakeDatabase.check;
+
+/**
+ * With a single worker, the NIO transport still serves everyone: a client that stops halfway
+ * through a message does not hold the worker, and pipelining more requests than the in-flight
+ * limit parks the connection instead of deadlocking the pool, and so does a client that stops
+ * reading its answers.
+ */
+public class NioServerTest {
+    public static void main(String[] args) throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        ExecutorService waiting = Executors.newCachedThreadPool(r -> {
+            Thread w = new Thread(r, "nio-waiting");
+            w.setDaemon(true);
+            return w;
+        });
+        NioServer server = new NioServer(port, null, null, 1, 1, 1024, waiting); // queue as in ServerMain
+        Thread t = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "nio-server");
+        t.setDaemon(true);
+        t.start();
+
+        try (Socket slow = connect(port); Socket other = connect(port)) {
+            // Handshake and first request both arrive in pieces
+            OutputStream slowOut = slow.getOutputStream();
+            byte[] hello = handshake();
+            slowOut.write(hello, 0, 3);
+            slowOut.flush();
+            Thread.sleep(100);
+            slowOut.write(hello, 3, hello.length - 3);
+            slowOut.flush();
+            DataInputStream slowIn = new DataInputStream(slow.getInputStream());
+            check(slowIn.readInt() == WireProtocol.MAGIC, "handshake reply");
+            slowIn.readUnsignedByte();
+            byte[] ping = frame(ping(7));
+            slowOut.write(ping, 0, 6);
+            slowOut.flush();
+            Thread.sleep(100);
+
+            OutputStream otherOut = other.getOutputStream();
+            otherOut.write(handshake());
+            otherOut.write(frame(ping(1)));
+            otherOut.flush();
+            BinaryMessageStream otherStream = negotiated(other);
+            check(((Response) otherStream.read()).getCorrelationId() == 1, "other client not answered");
+
+            slowOut.write(ping, 6, ping.length - 6);
+            slowOut.flush();
+            Response late = (Response) new BinaryMessageStream(slowIn, slowOut).read();
+            check(late.getCorrelationId() == 7 && "PONG".equals(late.getMessage()), "split request: " + late.getMessage());
+
+            // Pipelined well past the in-flight limit in one write
+            ByteArrayOutputStream burst = new ByteArrayOutputStream();
+            for (int id = 1; id <= 100; id++) burst.write(frame(ping(id)));
+            otherOut.write(burst.toByteArray());
+            otherOut.flush();
+            Set<Long> answered = new HashSet<>();
+            for (int i = 0; i < 100; i++) answered.add(((Response) otherStream.read()).getCorrelationId());
+            check(answered.size() == 100, "pipelined answers: " + answered.size());
+        }
+
+        try (Socket flooder = new Socket(); Socket other = connect(port)) {
+            // Keeps sending but never reads, so its answers pile up on the server
+            flooder.setReceiveBufferSize(4096);
+            flooder.connect(new java.net.InetSocketAddress("localhost", port));
+            OutputStream floodOut = flooder.getOutputStream();
+            AtomicLong batches = new AtomicLong();
+            Thread writer = new Thread(() -> {
+                try {
+                    floodOut.write(handshake());
+                    byte[] frame = frame(ping(1));
+                    ByteArrayOutputStream batch = new ByteArrayOutputStream();
+                    for (int i = 0; i < 1000; i++) batch.write(frame);
+                    while (true) {
+                        floodOut.write(batch.toByteArray());
+                        batches.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    // closed at the end of the test
+                }
+            }, "flooder");
+            writer.setDaemon(true);
+            writer.start();
+            // The server has stopped reading from it once its writes stall
+            long seen = -1;
+            for (int i = 0; i < 60 && batches.get() != seen; i++) {
+                seen = batches.get();
+                Thread.sleep(500);
+            }
+
+            OutputStream otherOut = other.getOutputStream();
+            otherOut.write(handshake());
+            otherOut.write(frame(ping(2)));
+            otherOut.flush();
+            check(((Response) negotiated(other).read()).getCorrelationId() == 2, "client not answered while another does not read");
+        }
+        System.out.println("NioServerTest passed");
+    }
+
+    static Socket connect(int port) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                Socket s = new Socket("localhost", port);
+                s.setSoTimeout(5000); // a stuck server fails the test instead of hanging it
+                return s;
+            } catch (IOException e) {
+                if (attempt == 50) throw e;
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    static byte[] handshake() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(WireProtocol.MAGIC);
+        out.writeByte(WireProtocol.VERSION_BINARY);
+        return bytes.toByteArray();
+    }
+
+    static BinaryMessageStream negotiated(Socket s) throws IOException {
+        DataInputStream in = new DataInputStream(s.getInputStream());
+        check(in.readInt() == WireProtocol.MAGIC, "handshake reply");
+        in.readUnsignedByte();
+        return new BinaryMessageStream(in, s.getOutputStream());
+    }
+
+    static Request ping(long id) {
+        Request req = new Request("PING");
+        req.setCorrelationId(id);
+        return req;
+    }
+
+    static byte[] frame(Request req) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BinaryMessageStream(new ByteArrayInputStream(new byte[0]), bytes).write(req);
+        return bytes.toByteArray();
+    }
+}
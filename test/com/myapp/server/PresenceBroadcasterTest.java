@@ -0,0 +1,46 @@
+package com.myapp.server;
+
+import com.myapp.common.Response;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.myapp.server.FakeDatabase.check;
+
+/**
+ * A subscriber whose socket does not drain must not hold up the others, and is dropped once
+ * it falls too far behind.
+ */
+public class PresenceBroadcasterTest {
+    public static void main(String[] args) throws Exception {
+        PresenceBroadcaster presence = new PresenceBroadcaster();
+
+        CountDownLatch stuck = new CountDownLatch(1);
+        ClientHandler slow = new ClientHandler(null, null);
+        slow.setResponseSink(resp -> {
+            try {
+                stuck.await(); // a full socket buffer
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        LinkedBlockingQueue<Response> received = new LinkedBlockingQueue<>();
+        ClientHandler fast = new ClientHandler(null, null);
+        fast.setResponseSink(received::add);
+
+        presence.subscribe(slow);
+        presence.subscribe(fast);
+
+        for (int i = 1; i <= 40; i++) {
+            presence.publish(i, true);
+            Response event = received.poll(2, TimeUnit.SECONDS);
+            check(event != null, "event " + i + " not delivered while another subscriber is stuck");
+            check(String.valueOf(i).equals(event.getData().get("online")), "event " + i + ": " + event.getData());
+        }
+        check(!presence.isSubscribed(slow), "stuck subscriber still subscribed");
+        check(presence.isSubscribed(fast), "fast subscriber dropped");
+        stuck.countDown();
+        System.out.println("PresenceBroadcasterTest passed");
+    }
+}
@@ -0,0 +1,124 @@
+package com.myapp.server;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.myapp.server.FakeDatabase.check;
+
+/**
+ * EXPLAINs the hot queries against a real MySQL database and checks that each can use the
+ * index SchemaMigrator created for it. The statements are the ones MySQLDatabase actually
+ * sends, recorded through FakeDatabase, so the check follows the code.
+ *
+ * Needs a database with the application schema (README 4.2) and the driver on the classpath:
+ *   java -cp out:mysql-connector-j.jar -Dtest.db.url=jdbc:mysql://localhost:3306/user_management_test
+ *        -Dtest.db.user=root -Dtest.db.password=... com.myapp.server.QueryPlanTest
+ * Without -Dtest.db.url it is skipped.
+ */
+public class QueryPlanTest {
+    private static final class Captured {
+        final String sql;
+        final List<Object> params;
+
+        Captured(String sql, List<Object> params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Captured> captured = new ArrayList<>();
+        FakeDatabase fake = new FakeDatabase((sql, params) -> {
+            captured.add(new Captured(sql, new ArrayList<>(params)));
+            return Collections.emptyList();
+        });
+        MySQLDatabase db = new MySQLDatabase(fake.pool());
+        Timestamp t = Timestamp.valueOf("2025-03-01 08:00:00");
+        List<Object[]> checks = new ArrayList<>(); // statement, table, leading columns of its index
+
+        db.countRecentFailedAttempts("alice", 15);
+        checks.add(new Object[] { last(captured), "login_attempts", "username,success,attempt_time" });
+        db.getAuditLogsByUserIdBefore(7, t, 100, 51);
+        checks.add(new Object[] { last(captured), "audit_logs", "user_id,created_at" });
+        db.loadAuditsBefore(t, 100, 51);
+        checks.add(new Object[] { last(captured), "audit_logs", "created_at,id" });
+        db.getLoginAttemptsBefore(t, 100, 51);
+        checks.add(new Object[] { last(captured), "login_attempts", "attempt_time,id" });
+        db.loadUsersChangedSince(t);
+        checks.add(new Object[] { last(captured), "users", "updated_at" });
+        db.queryUsers(null, null, null, "createdAt", true, "5|2025-03-01 08:00:00.0", 11);
+        checks.add(new Object[] { last(captured), "users", "created_at,id" });
+        db.queryUsers(null, "LOCKED", null, "id", false, null, 11);
+        checks.add(new Object[] { last(captured), "users", "status" });
+        db.queryUsers(null, null, "ADMIN", "id", false, null, 11);
+        checks.add(new Object[] { last(captured), "users", "role" });
+        db.queryUsers("ngu", null, null, "id", false, null, 11);
+        checks.add(new Object[] { last(captured), "users", "full_name" });
+        checks.add(new Object[] { last(captured), "users", "email" });
+
+        String url = System.getProperty("test.db.url");
+        if (url == null) {
+            System.out.println("QueryPlanTest skipped: no -Dtest.db.url");
+            return;
+        }
+        try (Connection connection = DriverManager.getConnection(url,
+                System.getProperty("test.db.user", "root"), System.getProperty("test.db.password", ""))) {
+            SchemaMigrator.migrate(connection);
+            for (Object[] c : checks) {
+                expectIndex(connection, (Captured) c[0], (String) c[1], (String) c[2]);
+            }
+        }
+        System.out.println("QueryPlanTest passed");
+    }
+
+    private static Captured last(List<Captured> captured) {
+        return captured.get(captured.size() - 1);
+    }
+
+    // The plan may still pick a scan on a small table, so any usable index counts
+    private static void expectIndex(Connection connection, Captured q, String table, String leadingColumns) throws SQLException {
+        Set<String> wanted = indexesStartingWith(connection, table, leadingColumns);
+        check(!wanted.isEmpty(), "no index on " + table + " (" + leadingColumns + ")");
+        Set<String> usable = new HashSet<>();
+        try (PreparedStatement stmt = connection.prepareStatement("EXPLAIN " + q.sql)) {
+            for (int i = 0; i < q.params.size(); i++) {
+                stmt.setObject(i + 1, q.params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    for (String column : new String[] { "possible_keys", "key" }) {
+                        String keys = rs.getString(column);
+                        if (keys != null) usable.addAll(Arrays.asList(keys.split(",")));
+                    }
+                }
+            }
+        }
+        usable.retainAll(wanted);
+        check(!usable.isEmpty(), "EXPLAIN " + q.sql + " cannot use any of " + wanted);
+    }
+
+    private static Set<String> indexesStartingWith(Connection connection, String table, String leadingColumns) throws SQLException {
+        String sql = "SELECT index_name, GROUP_CONCAT(column_name ORDER BY seq_in_index) FROM information_schema.statistics "
+                + "WHERE table_schema = DATABASE() AND table_name = ? GROUP BY index_name";
+        Set<String> names = new HashSet<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if ((rs.getString(2).toLowerCase() + ",").startsWith(leadingColumns + ",")) names.add(rs.getString(1));
+                }
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,142 @@
+package com.myapp.server;
+
+import com.myapp.common.BinaryMessageStream;
+import com.myapp.common.Request;
+import com.myapp.common.Response;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.myapp.server.FakeDatabase.check;
+import static com.myapp.server.FakeDatabase.row;
+
+/**
+ * N concurrent sessions send GET_AUDITS pages through CLIENTS client threads, against the
+ * thread-per-connection, virtual-thread and NIO transports in turn. Every statement takes
+ * DB_MS in FakeDatabase, behind a pool of POOL connections, so the runs differ only in how
+ * each transport holds its sessions and waits for the database. Reports requests per second,
+ * p50/p99 latency and peak threads, after one untimed round to warm up the JIT.
+ *   java -cp out -Dconnections=5000 com.myapp.server.SessionLoadTest
+ * Virtual threads need JDK 21. On an older JDK the "virtual" run is the cached thread pool
+ * ServerMain falls back to, and the report says so.
+ */
+public class SessionLoadTest {
+    private static final int DB_MS = 2;
+    private static final int POOL = 32;
+    private static final int CLIENTS = 200;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int n = Integer.getInteger("connections", 200);
+        List<Map<String, Object>> audits = new ArrayList<>();
+        LocalDateTime t = LocalDateTime.of(2025, 3, 1, 8, 0);
+        for (int id = 50; id >= 1; id--) {
+            audits.add(row("id", id, "user_id", id % 20, "action", "LOGIN_SUCCESS", "details", "row " + id,
+                    "created_at", t.minusMinutes(50 - id), "user_name", "user" + (id % 20), "user_role", "USER"));
+        }
+        FakeDatabase fake = new FakeDatabase((sql, params) -> {
+            try {
+                Thread.sleep(DB_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (sql.contains("FROM audit_logs a")) return audits;
+            return Collections.emptyList();
+        });
+        // Queueing for a connection is part of what is measured, so a slow machine must not time out
+        MySQLDatabase db = new MySQLDatabase(fake.pool(POOL, 60000));
+
+        boolean virtual = hasVirtualThreads();
+        System.out.println("JDK " + System.getProperty("java.version") + ", " + Runtime.getRuntime().availableProcessors()
+                + " CPU, " + n + " sessions, " + CLIENTS
+                + " clients, " + DB_MS + " ms per statement, pool of " + POOL
+                + (virtual ? "" : "; no virtual threads on this JDK, \"virtual\" is the cached-pool fallback"));
+        run("thread", n, IdleConnectionsTest.startBlockingTransport(db, null));
+        run("virtual", n, IdleConnectionsTest.startBlockingTransport(db, ServerMain.newVirtualThreadExecutor()));
+        run("nio", n, IdleConnectionsTest.startNioTransport(db));
+        System.out.println("SessionLoadTest passed");
+    }
+
+    private static void run(String name, int n, int port) throws Exception {
+        PrintStream out = System.out;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int idle = threads.getThreadCount();
+        List<Socket> sockets = new ArrayList<>();
+        List<BinaryMessageStream> sessions = new ArrayList<>();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // one log line per connection
+        try {
+            for (int i = 0; i < n; i++) {
+                Socket s = NioServerTest.connect(port);
+                sockets.add(s);
+                s.getOutputStream().write(NioServerTest.handshake());
+                s.getOutputStream().flush();
+                sessions.add(NioServerTest.negotiated(s));
+            }
+
+            drive(name, sessions, clients, 1); // warm-up, not timed
+            threads.resetPeakThreadCount();
+            long start = System.nanoTime();
+            long[] latencies = drive(name, sessions, clients, ROUNDS);
+            long elapsed = System.nanoTime() - start;
+            out.printf("%-8s %6.0f req/s  p50 %6.2f ms  p99 %7.2f ms  peak %d server threads%n", name,
+                    latencies.length / (elapsed / 1e9), latencies[latencies.length / 2] / 1e6,
+                    latencies[(int) (latencies.length * 0.99)] / 1e6, threads.getPeakThreadCount() - idle - CLIENTS);
+        } finally {
+            clients.shutdown();
+            for (Socket s : sockets) s.close();
+            // Let this transport's session threads end before the next one is counted
+            for (int i = 0; i < 100 && threads.getThreadCount() > idle + 1; i++) Thread.sleep(100);
+            System.setOut(out);
+        }
+    }
+
+    // Every session sends one page per round; returns the sorted round-trip times
+    private static long[] drive(String name, List<BinaryMessageStream> sessions, ExecutorService clients, int rounds) throws Exception {
+        int n = sessions.size();
+        long[] latencies = new long[n * rounds];
+        List<Future<?>> done = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++) {
+            int first = c;
+            done.add(clients.submit(() -> {
+                for (int round = 0; round < rounds; round++) {
+                    for (int i = first; i < n; i += CLIENTS) {
+                        Request req = new Request("GET_AUDITS");
+                        req.put("pageSize", "50");
+                        req.setCorrelationId(i + 1);
+                        long t0 = System.nanoTime();
+                        sessions.get(i).write(req);
+                        Response resp = (Response) sessions.get(i).read();
+                        latencies[round * n + i] = System.nanoTime() - t0;
+                        check(resp.isSuccess(), name + ": " + resp.getMessage());
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : done) f.get();
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static boolean hasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
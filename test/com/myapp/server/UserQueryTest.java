@@ -0,0 +1,69 @@
+package com.myapp.server;
+
+import com.myapp.common.Request;
+import com.myapp.common.Response;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.myapp.server.FakeDatabase.check;
+import static com.myapp.server.FakeDatabase.row;
+
+/**
+ * ADMIN_QUERY_USERS counts the matches on the first page only, and searches by prefix so
+ * every test stays a range on an index.
+ */
+public class UserQueryTest {
+    public static void main(String[] args) throws Exception {
+        List<String> statements = new ArrayList<>();
+        List<List<Object>> bound = new ArrayList<>();
+        FakeDatabase fake = new FakeDatabase((sql, params) -> {
+            statements.add(sql);
+            bound.add(new ArrayList<>(params));
+            if (sql.startsWith("SELECT COUNT(*) FROM users")) return Collections.singletonList(row("count", 42));
+            if (sql.startsWith("SELECT * FROM users")) {
+                List<Map<String, Object>> rows = new ArrayList<>();
+                int limit = (Integer) params.get(params.size() - 1);
+                for (int id = 1; id <= limit; id++) rows.add(row("id", id, "username", "alice" + id, "role", "USER", "status", "ACTIVE"));
+                return rows;
+            }
+            return Collections.emptyList(); // startup reads of AuthService
+        });
+        ConnectionPool pool = fake.pool();
+        ClientHandler handler = new ClientHandler(new MySQLDatabase(pool), new AuthService(new MySQLDatabase(pool), null));
+
+        statements.clear();
+        bound.clear();
+        Response first = query(handler, "alice", null);
+        check(first.isSuccess(), first.getMessage());
+        check("42".equals(first.getData().get("total")), "first page total: " + first.getData().get("total"));
+        check(statements.size() == 2, "first page ran " + statements);
+        for (int i = 0; i < statements.size(); i++) {
+            check(!statements.get(i).contains("CAST(id"), "id compared as text: " + statements.get(i));
+            check(bound.get(i).contains("alice%") && !bound.get(i).contains("%alice%"), "not a prefix search: " + bound.get(i));
+        }
+
+        statements.clear();
+        Response second = query(handler, "alice", first.getData().get("nextCursor"));
+        check(second.isSuccess(), second.getMessage());
+        check(second.getData().get("total") == null, "later page counted again");
+        check(statements.size() == 1, "later page ran " + statements);
+
+        statements.clear();
+        bound.clear();
+        query(handler, "17", null);
+        check(statements.get(0).contains("OR id = ?") && bound.get(0).contains(17), "numeric search skips the id: " + statements.get(0));
+        System.out.println("UserQueryTest passed");
+    }
+
+    private static Response query(ClientHandler handler, String search, String cursor) {
+        Request req = new Request("ADMIN_QUERY_USERS");
+        req.put("search", search);
+        req.put("sort", "id");
+        req.put("pageSize", "10");
+        if (cursor != null) req.put("cursor", cursor);
+        return handler.process(req, "127.0.0.1");
+    }
+}